@@ -0,0 +1,17 @@
+#!/bin/bash
+#
+# builds the library and the benchmarks and runs the benchmarks with allocation profiling.
+#
+#   ./run.sh [name] [JMH options...]
+#
+# results are written to results/<name>.json (default: current).
+#
+set -e
+cd "$(dirname "$0")"
+name=${1:-current}
+shift || true
+
+(cd .. && mvn -B -q install -DskipTests)
+mvn -B -q package
+mkdir -p results
+java -jar target/benchmarks.jar -prof gc -rf json -rff "results/$name.json" "$@"
@@ -0,0 +1,74 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of matching many short inputs by a loop and by matchBatch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+	private static final int INPUTS = 100000;
+
+	private Nene<Integer> nene;
+	private Nene.Builder<Integer> pair;
+	private List<String> inputs;
+
+	@Setup
+	public void setup() {
+		nene = new Nene<Integer>();
+		pair = nene.then("[a-z]+=").then(nene.action("[0-9]+", (x, y) -> y + x.length()));
+		inputs = new ArrayList<String>();
+		for(int i = 0; i < INPUTS; i++) {
+			inputs.add("key" + (char)('a' + i % 26) + "=" + i);
+		}
+	}
+
+	@Benchmark
+	public List<Nene.Result<Integer>> loop() {
+		List<Nene.Result<Integer>> results = new ArrayList<Nene.Result<Integer>>();
+
+		for(String input : inputs) {
+			results.add(pair.match(input, 0));
+		}
+		return results;
+	}
+
+	@Benchmark
+	public List<Nene.Result<Integer>> batchOneWorker() {
+		return nene.matchBatch(pair, inputs, 0, ForkJoinPool.commonPool(), 1);
+	}
+
+	@Benchmark
+	public List<Nene.Result<Integer>> batch() {
+		return nene.matchBatch(pair, inputs, 0);
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of chains of cond.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CondBenchmark {
+
+	@Param({ "2", "16" })
+	private int branches;
+
+	private String first;
+	private String last;
+	private Nene.Builder<Integer> chain;
+
+	@Setup
+	public void setup() {
+		Nene<Integer> n = new Nene<Integer>();
+		Nene.ConditionBuilder<Integer> builder = n.cond("key0", "key0=[0-9]+");
+
+		for(int i = 1; i < branches; i++) {
+			builder = builder.orElse("key" + i, "key" + i + "=[0-9]+");
+		}
+		chain = builder;
+		first = "key0=765";
+		last = "key" + (branches - 1) + "=765";
+	}
+
+	@Benchmark
+	public Nene.Result<Integer> first() {
+		return chain.match(first, 0);
+	}
+
+	@Benchmark
+	public Nene.Result<Integer> last() {
+		return chain.match(last, 0);
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.Random;
+
+/**
+ * Generators of inputs of the macro benchmarks.<br>
+ * Inputs are generated from a fixed seed, so the same format and size give the same input.
+ * Each input is made of whole records and is about the given size.
+ */
+/*package*/ final class Corpus {
+
+	private static final long SEED = 765;
+
+	private static final String[] WORDS = {
+		"alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta"
+	};
+
+	private static final String[] PATHS = {
+		"/index.html", "/images/logo.png", "/api/v1/items", "/search", "/login", "/static/app.js"
+	};
+
+	private static final String[] AGENTS = {
+		"Mozilla/5.0 (X11; Linux x86_64; rv:68.0) Gecko/20100101 Firefox/68.0",
+		"Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko)",
+		"curl/7.64.0"
+	};
+
+	private Corpus() {}
+
+	/**
+	 * parses a size like "64KB", "16MB" or "256MB".
+	 *
+	 * @param size size to parse
+	 * @return the number of characters
+	 */
+	/*package*/ static int size(String size) {
+		if(size.endsWith("MB")) {
+			return Integer.parseInt(size.substring(0, size.length() - 2)) << 20;
+		} else if(size.endsWith("KB")) {
+			return Integer.parseInt(size.substring(0, size.length() - 2)) << 10;
+		} else {
+			return Integer.parseInt(size);
+		}
+	}
+
+	/**
+	 * generates an input of the given format.
+	 *
+	 * @param format one of "json", "csv", "arith" and "accesslog"
+	 * @param size approximate number of characters
+	 * @return the input
+	 */
+	/*package*/ static String generate(String format, int size) {
+		StringBuilder b = new StringBuilder(size + 1024);
+		Random random = new Random(SEED);
+
+		switch(format) {
+		case "json":
+			b.append("[\n");
+			for(int i = 0; b.length() < size; i++) {
+				b.append(i > 0 ? ",\n" : "");
+				jsonRecord(b, random, i);
+			}
+			return b.append("\n]\n").toString();
+		case "csv":
+			for(int i = 0; b.length() < size; i++) {
+				csvRecord(b, random, i);
+			}
+			return b.toString();
+		case "arith":
+			while(b.length() < size) {
+				expression(b, random, 3);
+				b.append('\n');
+			}
+			return b.toString();
+		case "accesslog":
+			while(b.length() < size) {
+				logRecord(b, random);
+			}
+			return b.toString();
+		default:
+			throw new IllegalArgumentException(format);
+		}
+	}
+
+	private static String word(Random random) {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+	private static void jsonRecord(StringBuilder b, Random random, int id) {
+		b.append("  {\"id\": ").append(id);
+		b.append(", \"name\": \"").append(word(random)).append(" \\\"").append(word(random)).append("\\\"\"");
+		b.append(", \"tags\": [");
+		for(int i = random.nextInt(4); i > 0; i--) {
+			b.append('"').append(word(random)).append(i > 1 ? "\", " : "\"");
+		}
+		b.append("], \"score\": ").append(random.nextInt(20000) - 10000).append('.').append(random.nextInt(100));
+		b.append(", \"ratio\": ").append(random.nextInt(1000)).append("e-3");
+		b.append(", \"active\": ").append(random.nextBoolean());
+		b.append(", \"parent\": null");
+		b.append(",\n    \"geo\": {\"lat\": 35.").append(random.nextInt(1000000));
+		b.append(", \"lon\": 139.").append(random.nextInt(1000000));
+		b.append(", \"path\": [1, 2, {\"note\": \"line\\nbreak\\t").append(word(random)).append("\"}]}}");
+	}
+
+	private static void csvRecord(StringBuilder b, Random random, int id) {
+		b.append(id).append(',');
+		switch(random.nextInt(4)) {
+		case 0:
+			b.append('"').append(word(random)).append(", ").append(word(random)).append('"');
+			break;
+		case 1:
+			b.append("\"say \"\"").append(word(random)).append("\"\"\"");
+			break;
+		case 2:
+			b.append("\"two\n").append(word(random)).append('"');
+			break;
+		default:
+			b.append(word(random));
+			break;
+		}
+		b.append(',').append(random.nextBoolean() ? word(random) : "");
+		b.append(',').append(random.nextInt(100000)).append('.').append(random.nextInt(100));
+		b.append(",2019-").append(1 + random.nextInt(12)).append('-').append(1 + random.nextInt(28)).append('\n');
+	}
+
+	/*
+	 * divisors are always numbers, so no expression is divided by zero
+	 */
+	private static void expression(StringBuilder b, Random random, int depth) {
+		int terms = 1 + random.nextInt(4);
+
+		for(int i = 0; i < terms; i++) {
+			if(i > 0) {
+				char operator = "+-*/".charAt(random.nextInt(4));
+
+				b.append(' ').append(operator).append(' ');
+				if(operator == '/') {
+					b.append(1 + random.nextInt(999));
+					continue;
+				}
+			}
+			if(depth > 0 && random.nextInt(4) == 0) {
+				b.append('(');
+				expression(b, random, depth - 1);
+				b.append(')');
+			} else {
+				b.append(1 + random.nextInt(999));
+			}
+		}
+	}
+
+	private static void logRecord(StringBuilder b, Random random) {
+		b.append("192.168.").append(random.nextInt(256)).append('.').append(random.nextInt(256));
+		b.append(" - ").append(random.nextInt(8) == 0 ? "-" : word(random));
+		b.append(" [10/Oct/2019:13:").append(10 + random.nextInt(50)).append(':').append(10 + random.nextInt(50));
+		b.append(" +0900] \"").append(random.nextInt(4) == 0 ? "POST " : "GET ");
+		b.append(PATHS[random.nextInt(PATHS.length)]).append(" HTTP/1.1\" ");
+		b.append(random.nextInt(8) == 0 ? 404 : 200).append(' ');
+		if(random.nextInt(8) == 0) {
+			b.append('-');
+		} else {
+			b.append(random.nextInt(100000));
+		}
+		b.append(" \"http://example.com").append(PATHS[random.nextInt(PATHS.length)]).append("\" \"");
+		b.append(AGENTS[random.nextInt(AGENTS.length)]).append("\"\n");
+	}
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Hand-written baselines of the macro benchmarks.<br>
+ * Each baseline is a loop over characters of the input which computes the same checksum as the grammars
+ * and checks the input only as much as the checksum needs.
+ */
+/*package*/ final class HandwrittenBaselines {
+
+	/*
+	 * a recursive descent parser of arithmetic expressions
+	 */
+	private static final class Arith {
+
+		private final String input;
+		private int index = 0;
+
+		private Arith(String input) {
+			this.input = input;
+		}
+
+		private char peek() {
+			return index < input.length() ? input.charAt(index) : '\0';
+		}
+
+		private void expect(char ch) {
+			if(peek() != ch) {
+				throw new IllegalStateException("arith is not matched");
+			}
+			index++;
+		}
+
+		private boolean operator(char ch) {
+			if(index + 2 < input.length() && input.charAt(index) == ' ' && input.charAt(index + 1) == ch) {
+				index += 3;
+				return true;
+			}
+			return false;
+		}
+
+		private double factor() {
+			double result = 0;
+			int start = index;
+
+			if(peek() == '(') {
+				index++;
+				result = expression();
+				expect(')');
+				return result;
+			}
+			for(; index < input.length() && input.charAt(index) >= '0' && input.charAt(index) <= '9'; index++) {
+				result = result * 10 + (input.charAt(index) - '0');
+			}
+			if(index == start) {
+				throw new IllegalStateException("arith is not matched");
+			}
+			return result;
+		}
+
+		private double term() {
+			double result = factor();
+
+			while(true) {
+				if(operator('*')) {
+					result = result * factor();
+				} else if(operator('/')) {
+					result = result / factor();
+				} else {
+					return result;
+				}
+			}
+		}
+
+		private double expression() {
+			double result = term();
+
+			while(true) {
+				if(operator('+')) {
+					result = result + term();
+				} else if(operator('-')) {
+					result = result - term();
+				} else {
+					return result;
+				}
+			}
+		}
+
+		private double lines() {
+			double sum = 0;
+
+			while(index < input.length()) {
+				sum += expression();
+				expect('\n');
+			}
+			return sum;
+		}
+
+	}
+
+	private HandwrittenBaselines() {}
+
+	private static int endOfString(String input, int start) {
+		for(int i = start + 1; i < input.length(); i++) {
+			char ch = input.charAt(i);
+
+			if(ch == '\\') {
+				i++;
+			} else if(ch == '"') {
+				return i + 1;
+			}
+		}
+		throw new IllegalStateException("json is not matched");
+	}
+
+	private static double json(String input) {
+		double count = 0;
+
+		for(int i = 0; i < input.length();) {
+			char ch = input.charAt(i);
+			int next;
+
+			if(ch == '"') {
+				i = next = endOfString(input, i);
+				while(next < input.length() && Character.isWhitespace(input.charAt(next))) {
+					next++;
+				}
+				if(next >= input.length() || input.charAt(next) != ':') {
+					count++;
+				}
+			} else if(ch == '-' || (ch >= '0' && ch <= '9')) {
+				for(i++; i < input.length() && "0123456789.eE+-".indexOf(input.charAt(i)) >= 0; i++);
+				count++;
+			} else if(ch == 't' || ch == 'n') {
+				i += 4;
+				count++;
+			} else if(ch == 'f') {
+				i += 5;
+				count++;
+			} else {
+				i++;
+			}
+		}
+		return count;
+	}
+
+	private static double csv(String input) {
+		double count = 0;
+
+		for(int i = 0; i < input.length(); i++, count++) {
+			if(input.charAt(i) == '"') {
+				for(i++; i < input.length(); i++) {
+					if(input.charAt(i) == '"' && (i + 1 >= input.length() || input.charAt(++i) != '"')) {
+						break;
+					}
+				}
+			} else {
+				for(; i < input.length() && input.charAt(i) != ',' && input.charAt(i) != '\n'; i++);
+			}
+			if(i >= input.length()) {
+				throw new IllegalStateException("csv is not matched");
+			}
+		}
+		return count;
+	}
+
+	private static double number(String input, int start) {
+		double result = 0;
+
+		for(int i = start; input.charAt(i) >= '0' && input.charAt(i) <= '9'; i++) {
+			result = result * 10 + (input.charAt(i) - '0');
+		}
+		return result;
+	}
+
+	private static double accessLog(String input) {
+		double sum = 0;
+
+		for(int i = 0; i < input.length();) {
+			int request = input.indexOf('"', i);
+			int status = input.indexOf('"', request + 1) + 2;
+			int size = input.indexOf(' ', status) + 1;
+
+			sum += number(input, status);
+			if(input.charAt(size) != '-') {
+				sum += number(input, size);
+			}
+			if((i = input.indexOf('\n', size) + 1) == 0) {
+				throw new IllegalStateException("accesslog is not matched");
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * creates a parser of the given format which returns the checksum.
+	 *
+	 * @param format one of "json", "csv", "arith" and "accesslog"
+	 * @return the parser
+	 */
+	/*package*/ static ToDoubleFunction<String> of(String format) {
+		switch(format) {
+		case "json":
+			return HandwrittenBaselines::json;
+		case "csv":
+			return HandwrittenBaselines::csv;
+		case "arith":
+			return input -> new Arith(input).lines();
+		case "accesslog":
+			return HandwrittenBaselines::accessLog;
+		default:
+			throw new IllegalArgumentException(format);
+		}
+	}
+
+}
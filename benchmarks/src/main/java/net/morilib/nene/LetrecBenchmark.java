@@ -0,0 +1,63 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of deep recursion of letrec.<br>
+ * Patterns are matched on the stack of the benchmark thread, so the forked JVM is given a large stack.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss256m")
+public class LetrecBenchmark {
+
+	@Param({ "100", "10000" })
+	private int depth;
+
+	private String input;
+	private Nene.Builder<Integer> nested;
+
+	@Setup
+	public void setup() {
+		Nene<Integer> n = new Nene<Integer>();
+		StringBuilder builder = new StringBuilder();
+
+		for(int i = 0; i < depth; i++) {
+			builder.append('<');
+		}
+		for(int i = 0; i < depth; i++) {
+			builder.append('>');
+		}
+		input = builder.toString();
+		nested = n.letrec(x -> n.cond("<", n.then("<").then(x).then(">")).orElse(n.success));
+	}
+
+	@Benchmark
+	public Nene.Result<Integer> nested() {
+		return nested.match(input, 0);
+	}
+
+}
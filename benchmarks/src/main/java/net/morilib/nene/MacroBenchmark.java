@@ -0,0 +1,106 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of realistic grammars over generated inputs.<br>
+ * Each format is parsed by Nene, by java.util.regex and by hand-written code,
+ * and the three parsers are checked to compute the same checksum before measuring.
+ * The secondary result "megabytes" is the throughput in MB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MacroBenchmark {
+
+	/**
+	 * Megabytes of parsed input, which is reported per second.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Throughput {
+
+		public double megabytes;
+
+		@Setup(Level.Iteration)
+		public void clear() {
+			megabytes = 0;
+		}
+
+	}
+
+	@Param({ "json", "csv", "arith", "accesslog" })
+	private String format;
+
+	@Param({ "64KB", "16MB" })
+	private String size;
+
+	@Param({ "nene", "regex", "handwritten" })
+	private String parser;
+
+	private String input;
+	private double megabytes;
+	private ToDoubleFunction<String> parse;
+
+	private static ToDoubleFunction<String> parser(String parser, String format) {
+		switch(parser) {
+		case "nene":
+			return MacroGrammars.of(format);
+		case "regex":
+			return RegexBaselines.of(format);
+		case "handwritten":
+			return HandwrittenBaselines.of(format);
+		default:
+			throw new IllegalArgumentException(parser);
+		}
+	}
+
+	@Setup
+	public void setup() {
+		double nene, regex, handwritten;
+
+		input = Corpus.generate(format, Corpus.size(size));
+		megabytes = input.length() / 1e6;
+		parse = parser(parser, format);
+
+		nene = MacroGrammars.of(format).applyAsDouble(input);
+		regex = RegexBaselines.of(format).applyAsDouble(input);
+		handwritten = HandwrittenBaselines.of(format).applyAsDouble(input);
+		if(nene != regex || nene != handwritten) {
+			throw new IllegalStateException(format + ": checksums differ: " + nene + ", " + regex + ", " + handwritten);
+		}
+	}
+
+	@Benchmark
+	public double parse(Throughput throughput) {
+		throughput.megabytes += megabytes;
+		return parse.applyAsDouble(input);
+	}
+
+}
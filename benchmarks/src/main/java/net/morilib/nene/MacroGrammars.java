@@ -0,0 +1,126 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.function.BiFunction;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Grammars of the macro benchmarks written by Nene.<br>
+ * Each grammar matches the whole input and computes a checksum which the baselines also compute:
+ * the number of scalar values of JSON, the number of fields of CSV,
+ * the sum of values of arithmetic expressions and the sum of statuses and sizes of an access log.
+ */
+/*package*/ final class MacroGrammars {
+
+	private static final String STRING = "\"([^\"\\\\]|[\\\\].)*\"";
+	private static final String NUMBER = "-*[0-9]+([.][0-9]+)*([eE][-+]*[0-9]+)*";
+
+	private static final BiFunction<CharSequence, Double, Double> COUNT = (cs, x) -> x + 1;
+	private static final BiFunction<CharSequence, Double, Double> ADD = (cs, x) -> x + number(cs);
+
+	private MacroGrammars() {}
+
+	private static double number(CharSequence cs) {
+		double result = 0;
+
+		for(int i = 0; i < cs.length(); i++) {
+			result = result * 10 + (cs.charAt(i) - '0');
+		}
+		return result;
+	}
+
+	private static Nene.Builder<Double> json(NeneDouble n) {
+		Nene.Builder<Double> ws = n.skip("[ \t\r\n]");
+		Nene.Builder<Double> value = n.letrec(v -> n.cond("\"", n.spanAction(STRING, COUNT))
+				.orElse("[-0-9]", n.spanAction(NUMBER, COUNT))
+				.orElse("[tfn]", n.spanAction("true|false|null", COUNT))
+				.orElse("{", n.then("{").then(ws)
+						.then(n.cond("\"", n.then(STRING).then(ws).then(":").then(ws).then(v).then(ws)
+								.then(n.zeroOrMore(n.then(",").then(ws)
+										.then(STRING).then(ws).then(":").then(ws).then(v).then(ws))))
+							.orElse(n.success))
+						.then("}"))
+				.orElse("[\\[]", n.then("[\\[]").then(ws)
+						.then(n.cond("[\\]]", n.success)
+							.orElse(n.then(v).then(ws).then(n.zeroOrMore(n.then(",").then(ws).then(v).then(ws)))))
+						.then("[\\]]")));
+
+		return n.then(ws).then(value).then(ws);
+	}
+
+	private static Nene.Builder<Double> csv(NeneDouble n) {
+		Nene.Builder<Double> field = n.cond("\"", n.spanAction("\"([^\"]|\"\")*\"", COUNT))
+				.orElse(n.scanUntil("[,\n]", COUNT));
+
+		return n.zeroOrMore(n.then(field).then(n.zeroOrMore(n.then(",").then(field))).then("\n"));
+	}
+
+	private static Nene.Builder<Double> arith(NeneDouble n) {
+		Nene.Builder<Double> expression = n.letrec(e -> n.operatorsAsDouble(
+					n.cond("[(]", n.then("[(]").then(e).then("[)]"))
+						.orElse(n.spanAction("[0-9]+", (cs, x) -> number(cs))))
+				.infixLeft(" [+] ", 1, (x, y) -> x + y)
+				.infixLeft(" - ", 1, (x, y) -> x - y)
+				.infixLeft(" [*] ", 2, (x, y) -> x * y)
+				.infixLeft(" / ", 2, (x, y) -> x / y));
+
+		return n.zeroOrMore(n.actionAsDouble(n.then(expression).then("\n"), (value, sum) -> sum + value));
+	}
+
+	private static Nene.Builder<Double> accessLog(NeneDouble n) {
+		return n.zeroOrMore(n.then(n.scanUntil("[ ]")).then(" ")
+				.then(n.scanUntil("[ ]")).then(" ")
+				.then(n.scanUntil("[ ]")).then(" [\\[]")
+				.then(n.scanUntil("[\\]]")).then("[\\]] \"")
+				.then(n.scanUntil("[\"]")).then("\" ")
+				.then(n.spanAction("[0-9]+", ADD)).then(" ")
+				.then(n.cond("-", "-").orElse(n.spanAction("[0-9]+", ADD)))
+				.then(" \"").then(n.scanUntil("[\"]")).then("\" \"")
+				.then(n.scanUntil("[\"]")).then("\"\n"));
+	}
+
+	/**
+	 * creates a parser of the given format which returns the checksum.
+	 *
+	 * @param format one of "json", "csv", "arith" and "accesslog"
+	 * @return the parser
+	 */
+	/*package*/ static ToDoubleFunction<String> of(String format) {
+		NeneDouble n = new NeneDouble();
+		Nene.Builder<Double> grammar;
+
+		switch(format) {
+		case "json":
+			grammar = json(n);
+			break;
+		case "csv":
+			grammar = csv(n);
+			break;
+		case "arith":
+			grammar = arith(n);
+			break;
+		case "accesslog":
+			grammar = accessLog(n);
+			break;
+		default:
+			throw new IllegalArgumentException(format);
+		}
+
+		return input -> {
+			NeneDouble.DoubleResult result = n.match(grammar, input, 0);
+
+			if(result == null || result.index != input.length()) {
+				throw new IllegalStateException(format + " is not matched");
+			}
+			return result.attr;
+		};
+	}
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Baselines of the macro benchmarks written by java.util.regex.<br>
+ * Inputs are split into tokens or records by anchored patterns and the checksums are computed from groups,
+ * so JSON and arithmetic expressions are tokenized by a pattern and the structure is checked by code.
+ */
+/*package*/ final class RegexBaselines {
+
+	private static final Pattern JSON = Pattern.compile(
+			"\\G\\s*+(?:\"(?:[^\"\\\\]++|\\\\.)*+\"\\s*+:|(\"(?:[^\"\\\\]++|\\\\.)*+\""
+			+ "|-?\\d++(?:\\.\\d++)?(?:[eE][-+]?\\d++)?|true|false|null)|[\\[\\]{},])\\s*+");
+	private static final Pattern CSV = Pattern.compile("\\G(?:\"(?:[^\"]|\"\")*+\"|[^,\\n]*+)[,\\n]");
+	private static final Pattern ARITH = Pattern.compile("\\G ?+(?:(\\d++)|([-+*/()\\n]))");
+	private static final Pattern ACCESS_LOG = Pattern.compile(
+			"\\G\\S++ \\S++ \\S++ \\[[^\\]]*+\\] \"[^\"]*+\" (\\d++) (\\d++|-) \"[^\"]*+\" \"[^\"]*+\"\\n");
+
+	/*
+	 * a parser of arithmetic expressions over tokens of the pattern
+	 */
+	private static final class Arith {
+
+		private final String input;
+		private final Matcher matcher;
+		private char token;
+		private double number;
+		private int end;
+
+		private Arith(String input) {
+			this.input = input;
+			this.matcher = ARITH.matcher(input);
+		}
+
+		private void next() {
+			if(!matcher.find()) {
+				token = end == input.length() ? '$' : '?';
+				return;
+			}
+			end = matcher.end();
+			if(matcher.start(1) >= 0) {
+				token = '0';
+				number = number(input, matcher.start(1), matcher.end(1));
+			} else {
+				token = input.charAt(matcher.start(2));
+			}
+		}
+
+		private void expect(char ch) {
+			if(token != ch) {
+				throw new IllegalStateException("arith is not matched");
+			}
+			next();
+		}
+
+		private double factor() {
+			double result;
+
+			if(token == '(') {
+				next();
+				result = expression();
+				expect(')');
+			} else {
+				result = number;
+				expect('0');
+			}
+			return result;
+		}
+
+		private double term() {
+			double result = factor();
+
+			while(true) {
+				if(token == '*') {
+					next();
+					result = result * factor();
+				} else if(token == '/') {
+					next();
+					result = result / factor();
+				} else {
+					return result;
+				}
+			}
+		}
+
+		private double expression() {
+			double result = term();
+
+			while(true) {
+				if(token == '+') {
+					next();
+					result = result + term();
+				} else if(token == '-') {
+					next();
+					result = result - term();
+				} else {
+					return result;
+				}
+			}
+		}
+
+		private double lines() {
+			double sum = 0;
+
+			next();
+			while(token != '$') {
+				sum += expression();
+				expect('\n');
+			}
+			return sum;
+		}
+
+	}
+
+	private RegexBaselines() {}
+
+	private static double number(String input, int start, int end) {
+		double result = 0;
+
+		for(int i = start; i < end; i++) {
+			result = result * 10 + (input.charAt(i) - '0');
+		}
+		return result;
+	}
+
+	private static void checkEnd(int end, String input, String format) {
+		if(end != input.length()) {
+			throw new IllegalStateException(format + " is not matched");
+		}
+	}
+
+	private static double json(String input) {
+		Matcher matcher = JSON.matcher(input);
+		double count = 0;
+		int end = 0;
+
+		while(matcher.find()) {
+			if(matcher.start(1) >= 0) {
+				count++;
+			}
+			end = matcher.end();
+		}
+		checkEnd(end, input, "json");
+		return count;
+	}
+
+	private static double csv(String input) {
+		Matcher matcher = CSV.matcher(input);
+		double count = 0;
+		int end = 0;
+
+		while(matcher.find()) {
+			count++;
+			end = matcher.end();
+		}
+		checkEnd(end, input, "csv");
+		return count;
+	}
+
+	private static double accessLog(String input) {
+		Matcher matcher = ACCESS_LOG.matcher(input);
+		double sum = 0;
+		int end = 0;
+
+		while(matcher.find()) {
+			sum += number(input, matcher.start(1), matcher.end(1));
+			if(input.charAt(matcher.start(2)) != '-') {
+				sum += number(input, matcher.start(2), matcher.end(2));
+			}
+			end = matcher.end();
+		}
+		checkEnd(end, input, "accesslog");
+		return sum;
+	}
+
+	/**
+	 * creates a parser of the given format which returns the checksum.
+	 *
+	 * @param format one of "json", "csv", "arith" and "accesslog"
+	 * @return the parser
+	 */
+	/*package*/ static ToDoubleFunction<String> of(String format) {
+		switch(format) {
+		case "json":
+			return RegexBaselines::json;
+		case "csv":
+			return RegexBaselines::csv;
+		case "arith":
+			return input -> new Arith(input).lines();
+		case "accesslog":
+			return RegexBaselines::accessLog;
+		default:
+			throw new IllegalArgumentException(format);
+		}
+	}
+
+}
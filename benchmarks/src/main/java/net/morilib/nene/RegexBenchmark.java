@@ -0,0 +1,80 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.morilib.automaton2.AbstractBuiltNFA;
+import net.morilib.automaton2.RegexParseException;
+import net.morilib.automaton2.RegexParser;
+
+/**
+ * Benchmarks of compiling and scanning regular expressions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegexBenchmark {
+
+	@Param({ "literal", "class", "alternation" })
+	private String kind;
+
+	private String regex;
+	private String input;
+	private RegexMatcher matcher;
+	private final StringSequence sequence = new StringSequence();
+	private final ScanBuffer scanned = new ScanBuffer();
+
+	@Setup
+	public void setup() {
+		switch(kind) {
+		case "literal":
+			regex = "765pro346pro283pro";
+			input = "765pro346pro283pro";
+			break;
+		case "class":
+			regex = "[a-zA-Z_][a-zA-Z0-9_]*[ \t]*[0-9]+";
+			input = "identifier_765 \t 346283";
+			break;
+		case "alternation":
+			regex = "(if|then|else|while|for|return|break|continue)+";
+			input = "ifthenelsewhileforreturnbreakcontinue";
+			break;
+		default:
+			throw new IllegalArgumentException(kind);
+		}
+		matcher = Nene.compileRegex(regex);
+	}
+
+	@Benchmark
+	public AbstractBuiltNFA parse() throws RegexParseException {
+		return RegexParser.parse(regex);
+	}
+
+	@Benchmark
+	public boolean scan() throws Exception {
+		return matcher.scan(sequence.reset(input), scanned);
+	}
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+/**
+ * A sequence of a string which can be reset to reuse for each invocation.
+ */
+/*package*/ final class StringSequence implements Sequence {
+
+	private String string;
+	private int index;
+	private int pushed = -1;
+
+	/*package*/ StringSequence reset(String string) {
+		this.string = string;
+		this.index = 0;
+		this.pushed = -1;
+		return this;
+	}
+
+	@Override
+	public int read() {
+		int ch;
+
+		if(pushed >= 0) {
+			ch = pushed;
+			pushed = -1;
+			return ch;
+		}
+		return index < string.length() ? string.charAt(index++) : -1;
+	}
+
+	@Override
+	public void unread(int ch) {
+		pushed = ch;
+	}
+
+}
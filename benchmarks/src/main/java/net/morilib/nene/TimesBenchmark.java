@@ -0,0 +1,73 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of long loops of times.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimesBenchmark {
+
+	@Param({ "1000", "100000" })
+	private int length;
+
+	private String input;
+	private Nene.Builder<Integer> regexLoop;
+	private Nene.Builder<Integer> actionLoop;
+	private Nene.Builder<Integer> skip;
+
+	@Setup
+	public void setup() {
+		Nene<Integer> n = new Nene<Integer>();
+		StringBuilder builder = new StringBuilder();
+
+		for(int i = 0; i < length; i++) {
+			builder.append((char)('a' + i % 26));
+		}
+		input = builder.toString();
+		regexLoop = n.zeroOrMore("[a-z]");
+		actionLoop = n.zeroOrMore(n.action("[a-z]", (x, y) -> y + 1));
+		skip = n.skip("[a-z]");
+	}
+
+	@Benchmark
+	public Nene.Result<Integer> regexLoop() {
+		return regexLoop.match(input, 0);
+	}
+
+	@Benchmark
+	public Nene.Result<Integer> actionLoop() {
+		return actionLoop.match(input, 0);
+	}
+
+	@Benchmark
+	public Nene.Result<Integer> skip() {
+		return skip.match(input, 0);
+	}
+
+}
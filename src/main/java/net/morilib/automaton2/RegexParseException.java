@@ -13,4 +13,21 @@ package net.morilib.automaton2;
  */
 public class RegexParseException extends Exception {
 
+	/**
+	 * creates exception.
+	 */
+	public RegexParseException() {
+		super();
+	}
+
+	/**
+	 * creates exception.
+	 *
+	 * @param message a message
+	 * @param cause the cause
+	 */
+	public RegexParseException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
 }
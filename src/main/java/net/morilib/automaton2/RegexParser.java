@@ -10,127 +10,432 @@ package net.morilib.automaton2;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * A parser of regular expression.
  */
 public final class RegexParser {
 
-	private static class Result {
+	private static class Result<N> {
 
-		private AbstractBuiltNFA nfa;
+		private N nfa;
 		private int lastIndex;
 
-		private Result(int lastIndex, AbstractBuiltNFA nfa) {
+		private Result(int lastIndex, N nfa) {
 			this.lastIndex = lastIndex;
 			this.nfa = nfa;
 		}
 
 	}
 
-	private static final String METACHARACTERS = "|()";
+	/*
+	 * constructors of automata from parsed expressions
+	 */
+	private static interface Factory<N> {
+
+		N empty();
+
+		N singleton(Predicate<Character> charset);
+
+		N concatenation(List<N> sequence);
+
+		N alternation(List<N> alternates);
+
+		N repetition(N nfa, boolean nullable);
+
+		N group(N nfa, int group);
+
+	}
+
+	/*
+	 * state of parsing which is shared by all subexpressions
+	 */
+	private static class Context<N> {
+
+		private final Factory<N> factory;
+		private final List<Predicate<Character>> charsets;
+		private final boolean foldCase;
+		private int groups = 0;
+
+		private Context(Factory<N> factory, List<Predicate<Character>> charsets, boolean foldCase) {
+			this.factory = factory;
+			this.charsets = charsets;
+			this.foldCase = foldCase;
+		}
+
+	}
+
+	private static final Factory<AbstractBuiltNFA> NFA = new Factory<AbstractBuiltNFA>() {
+
+		@Override
+		public AbstractBuiltNFA empty() {
+			return AbstractBuiltNFA.NULL_NFA;
+		}
+
+		@Override
+		public AbstractBuiltNFA singleton(Predicate<Character> charset) {
+			return new SingletonNFA(charset);
+		}
+
+		@Override
+		public AbstractBuiltNFA concatenation(List<AbstractBuiltNFA> sequence) {
+			return new ConcatenationNFA(sequence);
+		}
+
+		@Override
+		public AbstractBuiltNFA alternation(List<AbstractBuiltNFA> alternates) {
+			return new AlternationNFA(alternates);
+		}
+
+		@Override
+		public AbstractBuiltNFA repetition(AbstractBuiltNFA nfa, boolean nullable) {
+			return new RepetitionNFA(nfa, nullable);
+		}
+
+		@Override
+		public AbstractBuiltNFA group(AbstractBuiltNFA nfa, int group) {
+			return nfa;
+		}
+
+	};
+
+	private static final Factory<TaggedNFA.Fragment> TAGGED = new Factory<TaggedNFA.Fragment>() {
+
+		@Override
+		public TaggedNFA.Fragment empty() {
+			return nfa -> {};
+		}
+
+		@Override
+		public TaggedNFA.Fragment singleton(Predicate<Character> charset) {
+			return TaggedNFA.singleton(charset);
+		}
+
+		@Override
+		public TaggedNFA.Fragment concatenation(List<TaggedNFA.Fragment> sequence) {
+			return TaggedNFA.concatenation(sequence);
+		}
+
+		@Override
+		public TaggedNFA.Fragment alternation(List<TaggedNFA.Fragment> alternates) {
+			return TaggedNFA.alternation(alternates);
+		}
+
+		@Override
+		public TaggedNFA.Fragment repetition(TaggedNFA.Fragment nfa, boolean nullable) {
+			return TaggedNFA.repetition(nfa, nullable);
+		}
+
+		@Override
+		public TaggedNFA.Fragment group(TaggedNFA.Fragment nfa, int group) {
+			return TaggedNFA.group(nfa, group);
+		}
+
+	};
+
+	/*
+	 * tells whether an expression matches the empty string without constructing its automaton
+	 */
+	private static final Factory<Boolean> NULLABLE = new Factory<Boolean>() {
+
+		@Override
+		public Boolean empty() {
+			return true;
+		}
+
+		@Override
+		public Boolean singleton(Predicate<Character> charset) {
+			return false;
+		}
+
+		@Override
+		public Boolean concatenation(List<Boolean> sequence) {
+			return !sequence.contains(false);
+		}
+
+		@Override
+		public Boolean alternation(List<Boolean> alternates) {
+			return alternates.contains(true);
+		}
+
+		@Override
+		public Boolean repetition(Boolean nfa, boolean nullable) {
+			return nullable || nfa;
+		}
+
+		@Override
+		public Boolean group(Boolean nfa, int group) {
+			return nfa;
+		}
+
+	};
+
+	/**
+	 * the flag at the start of a regular expression which matches characters ignoring case.
+	 */
+	public static final String CASE_INSENSITIVE = "(?i)";
+
+	private static final String METACHARACTERS = "|)";
 	private static final Pattern CHARSET = Pattern.compile("\\[(?:\\\\.|[^\\[\\]])+\\]");
-	private static final Pattern DOT = Pattern.compile(".");
+	private static final int BLOCK_SIZE = 256;
+
+	/*
+	 * a set of characters tested by a bitmap which is computed from a pattern by blocks of 256 characters.
+	 * The bits are published to threads through the final field of the block.
+	 */
+	private static final class Charset implements Predicate<Character> {
 
-	private static Result parseAlternation(String match, int index) throws RegexParseException {
-		Result result = parseSequence(match, index);
+		private static final class Block {
+
+			private final long[] bits = new long[BLOCK_SIZE / 64];
+
+			private Block(Pattern pattern, int high) {
+				Matcher matcher = pattern.matcher("");
+
+				for(int i = 0; i < BLOCK_SIZE; i++) {
+					if(matcher.reset(String.valueOf((char)(high * BLOCK_SIZE + i))).matches()) {
+						bits[i >>> 6] |= 1L << i;
+					}
+				}
+			}
+
+		}
+
+		private final Pattern pattern;
+		private final Block[] blocks = new Block[65536 / BLOCK_SIZE];
+
+		private Charset(Pattern pattern) {
+			this.pattern = pattern;
+		}
+
+		@Override
+		public boolean test(Character ch) {
+			Block block = blocks[ch / BLOCK_SIZE];
+
+			if(block == null) {
+				blocks[ch / BLOCK_SIZE] = block = new Block(pattern, ch / BLOCK_SIZE);
+			}
+			return (block.bits[(ch % BLOCK_SIZE) >>> 6] & (1L << ch)) != 0;
+		}
+
+	}
+
+	/*
+	 * sets of characters are shared by all regular expressions,
+	 * so the bitmap of a set is computed once for all expressions which use the set
+	 */
+	private static final Map<String, Charset> CHARSETS = new ConcurrentHashMap<String, Charset>();
+
+	private static <N> N singleton(Predicate<Character> charset, Context<N> context) {
+		if(context.charsets != null) {
+			context.charsets.add(charset);
+		}
+		return context.factory.singleton(charset);
+	}
+
+	private static Predicate<Character> charset(String charset, boolean foldCase) throws RegexParseException {
+		String key = foldCase ? CASE_INSENSITIVE + charset : charset;
+		Charset result = CHARSETS.get(key), before;
+
+		if(result == null) {
+			try {
+				result = new Charset(Pattern.compile(charset, foldCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0));
+			} catch(PatternSyntaxException e) {
+				throw new RegexParseException(e.getDescription(), e);
+			}
+			if((before = CHARSETS.putIfAbsent(key, result)) != null) {
+				result = before;
+			}
+		}
+		return result;
+	}
+
+	private static boolean equalsIgnoreCase(char x, char y) {
+		return x == y ||
+				Character.toUpperCase(x) == Character.toUpperCase(y) ||
+				Character.toLowerCase(x) == Character.toLowerCase(y);
+	}
+
+	private static <N> Result<N> parseAlternation(String match, int index, Context<N> context) throws RegexParseException {
+		Result<N> result = parseSequence(match, index, context);
 
 		if(result.lastIndex < match.length() && match.charAt(result.lastIndex) == '|') {
-			List<AbstractBuiltNFA> nfas = new ArrayList<AbstractBuiltNFA>();
+			List<N> nfas = new ArrayList<N>();
 			int indexNew = result.lastIndex;
 
 			nfas.add(result.nfa);
 			while(result.lastIndex < match.length() && match.charAt(indexNew) == '|') {
-				result = parseSequence(match, indexNew + 1);
+				result = parseSequence(match, indexNew + 1, context);
 				nfas.add(result.nfa);
 				indexNew = result.lastIndex;
 			}
-			return new Result(result.lastIndex, new AlternationNFA(nfas));
+			return new Result<N>(result.lastIndex, context.factory.alternation(nfas));
 		} else {
 			return result;
 		}
 	}
 
-	private static Result parseSequence(String match, int index) throws RegexParseException {
-		List<AbstractBuiltNFA> nfas = new ArrayList<AbstractBuiltNFA>();
+	private static <N> Result<N> parseSequence(String match, int index, Context<N> context) throws RegexParseException {
+		List<N> nfas = new ArrayList<N>();
 		int lastIndex = index;
 
 		do {
-			Result result = parseRepetition(match, lastIndex);
+			Result<N> result = parseRepetition(match, lastIndex, context);
 
 			nfas.add(result.nfa);
 			lastIndex = result.lastIndex;
 		} while(lastIndex < match.length() && METACHARACTERS.indexOf(match.charAt(lastIndex)) < 0);
 
 		if(nfas.size() == 0) {
-			return new Result(lastIndex, AbstractBuiltNFA.NULL_NFA);
+			return new Result<N>(lastIndex, context.factory.empty());
 		} else if(nfas.size() == 1) {
-			return new Result(lastIndex, nfas.get(0));
+			return new Result<N>(lastIndex, nfas.get(0));
 		} else {
-			return new Result(lastIndex, new ConcatenationNFA(nfas));
+			return new Result<N>(lastIndex, context.factory.concatenation(nfas));
 		}
 	}
 
-	private static Result parseRepetition(String match, int index) throws RegexParseException {
-		Result result = parseCharacter(match, index);
+	private static <N> Result<N> parseRepetition(String match, int index, Context<N> context) throws RegexParseException {
+		Result<N> result = parseCharacter(match, index, context);
 
 		if(result.lastIndex >= match.length()) {
 			return result;
 		} else {
 			switch(match.charAt(result.lastIndex)) {
 			case '*':
-				return new Result(result.lastIndex + 1, new RepetitionNFA(result.nfa, true));
+				return new Result<N>(result.lastIndex + 1, context.factory.repetition(result.nfa, true));
 			case '+':
-				return new Result(result.lastIndex + 1, new RepetitionNFA(result.nfa, false));
+				return new Result<N>(result.lastIndex + 1, context.factory.repetition(result.nfa, false));
 			default:
 				return result;
 			}
 		}
 	}
 
-	private static Result parseCharacter(String match, int index) throws RegexParseException {
+	private static <N> Result<N> parseCharacter(String match, int index, Context<N> context) throws RegexParseException {
 		if(index >= match.length()) {
 			throw new RegexParseException();
 		}
 
 		char aChar = match.charAt(index);
 		if(aChar == '(') {
-			Result result = parseAlternation(match, index + 1);
+			int group = ++context.groups;
+			Result<N> result = parseAlternation(match, index + 1, context);
 
 			if(result.lastIndex >= match.length() || match.charAt(result.lastIndex) != ')') {
 				throw new RegexParseException();
 			}
-			return new Result(result.lastIndex + 1, result.nfa);
+			return new Result<N>(result.lastIndex + 1, context.factory.group(result.nfa, group));
 		} else if(aChar == '.') {
-			return new Result(index + 1, new SingletonNFA(
-					ch -> DOT.matcher(String.valueOf(ch)).matches()));
+			return new Result<N>(index + 1, singleton(charset(".", false), context));
 		}
 
 		String aString = match.substring(index);
 		Matcher matcher;
 		if((matcher = CHARSET.matcher(aString)).lookingAt()) {
-			Pattern aPattern = Pattern.compile(matcher.group());
-
-			return new Result(index + matcher.end(), new SingletonNFA(
-					ch -> aPattern.matcher(String.valueOf(ch)).matches()));
+			return new Result<N>(index + matcher.end(), singleton(charset(matcher.group(), context.foldCase), context));
 		} else {
-			return new Result(index + 1, new SingletonNFA(ch -> ch == match.charAt(index)));
+			return new Result<N>(index + 1, singleton(context.foldCase ? ch -> equalsIgnoreCase(ch, aChar) : ch -> ch == aChar, context));
 		}
 	}
 
+	private static <N> Result<N> parseRegex(String regex, Context<N> context) throws RegexParseException {
+		return parseAlternation(regex, context.foldCase ? CASE_INSENSITIVE.length() : 0, context);
+	}
+
 	/**
-	 * parses the given regular expression.
+	 * parses the given regular expression.<br>
+	 * If the regular expression starts with {@link #CASE_INSENSITIVE},
+	 * literals and sets of characters are folded to match characters ignoring case.
 	 *
 	 * @param regex regular expression to parse
 	 * @return constructed NFA
 	 * @throws RegexParseException syntax error
 	 */
 	public static AbstractBuiltNFA parse(String regex) throws RegexParseException {
-		Result result = parseAlternation(regex, 0);
+		return parse(regex, null);
+	}
+
+	/**
+	 * parses the given regular expression and collects the sets of characters in the expression.<br>
+	 * Characters which belong to the same sets make the same transitions in the constructed NFA.
+	 *
+	 * @param regex regular expression to parse
+	 * @param charsets list to which sets of characters are added, or null
+	 * @return constructed NFA
+	 * @throws RegexParseException syntax error
+	 */
+	public static AbstractBuiltNFA parse(String regex, List<Predicate<Character>> charsets) throws RegexParseException {
+		return parseRegex(regex, new Context<AbstractBuiltNFA>(NFA, charsets, regex.startsWith(CASE_INSENSITIVE))).nfa;
+	}
+
+	/**
+	 * returns true if the given regular expression matches the empty string.<br>
+	 * The expression is only parsed, so no automaton is constructed.
+	 *
+	 * @param regex regular expression to parse
+	 * @return true if the empty string is matched
+	 * @throws RegexParseException syntax error
+	 */
+	public static boolean nullable(String regex) throws RegexParseException {
+		return parseRegex(regex, new Context<Boolean>(NULLABLE, null, regex.startsWith(CASE_INSENSITIVE))).nfa;
+	}
+
+	/**
+	 * parses the given set of characters like "[0-9]" which is the same as the set in regular expressions.<br>
+	 * If the set starts with {@link #CASE_INSENSITIVE}, the set is folded to match characters ignoring case.
+	 *
+	 * @param charset set of characters to parse
+	 * @return predicate of the set
+	 * @throws RegexParseException syntax error
+	 */
+	public static Predicate<Character> parseCharset(String charset) throws RegexParseException {
+		boolean foldCase = charset.startsWith(CASE_INSENSITIVE);
+		Matcher matcher = CHARSET.matcher(charset);
+
+		if(!matcher.region(foldCase ? CASE_INSENSITIVE.length() : 0, charset.length()).matches()) {
+			throw new RegexParseException();
+		}
+		return charset(matcher.group(), foldCase);
+	}
+
+	/**
+	 * parses the given regular expression to an NFA which captures groups.<br>
+	 * Each pair of parentheses is a group which is numbered from 1 in the order of its left parenthesis.
+	 *
+	 * @param regex regular expression to parse
+	 * @return constructed NFA
+	 * @throws RegexParseException syntax error
+	 */
+	public static TaggedNFA parseTagged(String regex) throws RegexParseException {
+		return parseTagged(regex, charset -> ch -> charset.test((char)ch));
+	}
+
+	/**
+	 * parses the given regular expression to an NFA which captures groups
+	 * and compiles each set of characters by the given function.<br>
+	 * The function can compile a set to a faster test like a bitmap, which is called for each character and thread.
+	 *
+	 * @param regex regular expression to parse
+	 * @param compiler function which compiles a set of characters to a test of characters
+	 * @return constructed NFA
+	 * @throws RegexParseException syntax error
+	 */
+	public static TaggedNFA parseTagged(String regex,
+			Function<Predicate<Character>, IntPredicate> compiler) throws RegexParseException {
+		Context<TaggedNFA.Fragment> context =
+				new Context<TaggedNFA.Fragment>(TAGGED, null, regex.startsWith(CASE_INSENSITIVE));
+		Result<TaggedNFA.Fragment> result = parseRegex(regex, context);
 
-		return result.nfa;
+		return new TaggedNFA(result.nfa, context.groups, compiler);
 	}
 
 }
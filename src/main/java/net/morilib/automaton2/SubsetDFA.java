@@ -0,0 +1,280 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.automaton2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * A DFA which is constructed from NFAs by subset construction on demand.<br>
+ * A state of the DFA has a set of states for each NFA,
+ * so that the DFA tells which NFA accepts the input.
+ * The DFA may be shared by threads.
+ */
+public class SubsetDFA {
+
+	private static final int TABLE_SIZE = 256;
+
+	/**
+	 * A state of the DFA.
+	 */
+	public static final class State {
+
+		private final List<Set<Object>> sets;
+		private final int accept;
+		private final boolean dead;
+		private final State[] table = new State[TABLE_SIZE];
+		private final Map<Character, State> others = new ConcurrentHashMap<Character, State>();
+
+		private State(List<Set<Object>> sets, int accept, boolean dead) {
+			this.sets = sets;
+			this.accept = accept;
+			this.dead = dead;
+		}
+
+		/**
+		 * gets the index of the first NFA which accepts this state.
+		 *
+		 * @return index of NFA or -1 if no NFA accepts this state
+		 */
+		public int getAccept() {
+			return accept;
+		}
+
+		/**
+		 * returns true if this state is accepted by an NFA.
+		 *
+		 * @return true if this state is accepted
+		 */
+		public boolean isAccept() {
+			return accept >= 0;
+		}
+
+		/**
+		 * returns true if no NFA can go on from this state.
+		 *
+		 * @return true if this state is dead
+		 */
+		public boolean isDead() {
+			return dead;
+		}
+
+	}
+
+	private final List<AbstractBuiltNFA> nfas;
+	private final Map<List<Set<Object>>, State> states = new HashMap<List<Set<Object>>, State>();
+	private final State start;
+
+	/**
+	 * creates a DFA from the given NFAs.<br>
+	 * An NFA of smaller index has priority over NFAs of larger index.
+	 *
+	 * @param nfas NFAs
+	 */
+	public SubsetDFA(List<AbstractBuiltNFA> nfas) {
+		List<Set<Object>> sets = new ArrayList<Set<Object>>();
+
+		this.nfas = new ArrayList<AbstractBuiltNFA>(nfas);
+		for(AbstractBuiltNFA nfa : this.nfas) {
+			sets.add(closure(nfa, Collections.singleton(nfa.getStartState())));
+		}
+		start = getState(sets);
+	}
+
+	/**
+	 * creates a DFA from the given NFA.
+	 *
+	 * @param nfa NFA
+	 */
+	public SubsetDFA(AbstractBuiltNFA nfa) {
+		this(Collections.singletonList(nfa));
+	}
+
+	private static Set<Object> closure(AbstractBuiltNFA nfa, Set<Object> states) {
+		Set<Object> before = null;
+		Set<Object> result = states;
+
+		while(before == null || !before.equals(result)) {
+			before = result;
+			result = nfa.transitEpsilon(result);
+		}
+		return Collections.unmodifiableSet(result);
+	}
+
+	private State getState(List<Set<Object>> sets) {
+		State state = states.get(sets);
+
+		if(state == null) {
+			int accept = -1;
+			boolean dead = true;
+
+			for(int i = 0; i < sets.size(); i++) {
+				if(!sets.get(i).isEmpty()) {
+					dead = false;
+					if(accept < 0 && nfas.get(i).isAccept(sets.get(i))) {
+						accept = i;
+					}
+				}
+			}
+			state = new State(Collections.unmodifiableList(sets), accept, dead);
+			states.put(state.sets, state);
+		}
+		return state;
+	}
+
+	/**
+	 * gets the initial state.
+	 *
+	 * @return the initial state
+	 */
+	public State getStartState() {
+		return start;
+	}
+
+	/**
+	 * transits the given state by the given character.
+	 *
+	 * @param state the state
+	 * @param ch the character
+	 * @return the next state which is dead if no NFA can go on
+	 */
+	public State transit(State state, char ch) {
+		State result = ch < TABLE_SIZE ? state.table[ch] : state.others.get(ch);
+
+		return result != null ? result : compute(state, ch);
+	}
+
+	/**
+	 * gets representative characters of classes of characters.<br>
+	 * Characters which belong to the same sets of the given sets make the same transitions,
+	 * so an automaton is explored by the representative characters.
+	 *
+	 * @param charsets sets of characters collected by {@link RegexParser#parse(String, List)}
+	 * @return the first character of each class
+	 */
+	public static List<Character> alphabet(List<Predicate<Character>> charsets) {
+		List<Character> result = new ArrayList<Character>();
+
+		classes(charsets, result);
+		return result;
+	}
+
+	/**
+	 * splits all characters into classes of characters which belong to the same sets of the given sets.<br>
+	 * Classes are numbered in the order of their first characters,
+	 * and the first character of each class is added to the given list.
+	 *
+	 * @param charsets sets of characters collected by {@link RegexParser#parse(String, List)}
+	 * @param representatives list to which the first character of each class is added
+	 * @return the number of the class of each character
+	 */
+	public static int[] classes(List<Predicate<Character>> charsets, List<Character> representatives) {
+		int[] result = new int[Character.MAX_VALUE + 1];
+		int count = 1;
+
+		// each set splits every class into characters in the set and characters not in the set,
+		// and new classes are numbered in the order of their first characters
+		for(Predicate<Character> charset : charsets) {
+			int[] split = new int[count * 2];
+			int next = 0;
+
+			Arrays.fill(split, -1);
+			for(int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+				int key = result[ch] * 2 + (charset.test((char)ch) ? 1 : 0);
+
+				if(split[key] < 0) {
+					split[key] = next++;
+				}
+				result[ch] = split[key];
+			}
+			count = next;
+		}
+
+		for(int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+			if(result[ch] == representatives.size()) {
+				representatives.add((char)ch);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * returns true if some input has both a prefix accepted by the NFA of the first index
+	 * and a prefix accepted by the NFA of the second index.<br>
+	 * If this returns false, at most one of the NFAs matches a prefix of any input.
+	 *
+	 * @param x index of an NFA
+	 * @param y index of another NFA
+	 * @param alphabet representative characters given by {@link #alphabet(List)}
+	 * @return true if prefixes of an input are accepted by both NFAs
+	 */
+	public boolean prefixesIntersect(int x, int y, List<Character> alphabet) {
+		Set<List<Object>> visited = new HashSet<List<Object>>();
+		List<List<Object>> queue = new ArrayList<List<Object>>();
+
+		queue.add(Arrays.asList(start, isAccept(start, x), isAccept(start, y)));
+		for(int i = 0; i < queue.size(); i++) {
+			List<Object> item = queue.get(i);
+			State state = (State)item.get(0);
+			boolean acceptX = (Boolean)item.get(1);
+			boolean acceptY = (Boolean)item.get(2);
+
+			if(acceptX && acceptY) {
+				return true;
+			} else if(!visited.add(item) ||
+					(!acceptX && state.sets.get(x).isEmpty()) ||
+					(!acceptY && state.sets.get(y).isEmpty())) {
+				continue;
+			}
+
+			for(char ch : alphabet) {
+				State next = transit(state, ch);
+
+				queue.add(Arrays.asList(next, acceptX || isAccept(next, x), acceptY || isAccept(next, y)));
+			}
+		}
+		return false;
+	}
+
+	private boolean isAccept(State state, int index) {
+		return nfas.get(index).isAccept(state.sets.get(index));
+	}
+
+	private synchronized State compute(State state, char ch) {
+		List<Set<Object>> sets = new ArrayList<Set<Object>>();
+		State result;
+
+		for(int i = 0; i < nfas.size(); i++) {
+			AbstractBuiltNFA nfa = nfas.get(i);
+			Set<Object> stateNew = new HashSet<Object>();
+
+			for(Object s : state.sets.get(i)) {
+				stateNew.addAll(nfa.transit(s, ch));
+			}
+			sets.add(stateNew.isEmpty() ? Collections.emptySet() : closure(nfa, stateNew));
+		}
+
+		result = getState(sets);
+		if(ch < TABLE_SIZE) {
+			state.table[ch] = result;
+		} else {
+			state.others.put(ch, result);
+		}
+		return result;
+	}
+
+}
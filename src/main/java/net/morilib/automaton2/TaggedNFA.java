@@ -0,0 +1,336 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.automaton2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * An NFA whose transitions are tagged by starts and ends of groups.<br>
+ * The NFA is a program of instructions which is simulated by all threads at once,
+ * so offsets of groups are captured in one pass over characters without backtracking.
+ * Each thread has its own offsets of groups which are copied when a tag is passed.
+ * The longest match is found as {@link SubsetDFA} does, and if the match is matched in several ways,
+ * the way which prefers earlier alternatives and more repetitions is captured.
+ * Sets of characters are compiled to tests of characters when the NFA is constructed,
+ * so that a step does not run the predicates of the regular expression.
+ */
+public final class TaggedNFA {
+
+	private static final int CHAR = 0;
+	private static final int SPLIT = 1;
+	private static final int JUMP = 2;
+	private static final int SAVE = 3;
+	private static final int MATCH = 4;
+
+	/*
+	 * a part of the program which is emitted in the order of the regular expression
+	 */
+	/*package*/ static interface Fragment {
+
+		/*package*/ void emit(TaggedNFA nfa);
+
+	}
+
+	/*
+	 * threads of a step which are ordered by priority and have their own tags
+	 */
+	private static final class Threads {
+
+		private final int[] pcs;
+		private final int[][] tags;
+		private final int[] marks;
+		private int size;
+		private int generation;
+		private int matched;
+
+		private Threads(int states, int tagCount) {
+			pcs = new int[states];
+			tags = new int[states][tagCount];
+			marks = new int[states];
+		}
+
+		private void clear() {
+			size = 0;
+			matched = -1;
+			generation++;
+		}
+
+		private boolean mark(int pc) {
+			if(marks[pc] == generation) {
+				return false;
+			}
+			marks[pc] = generation;
+			return true;
+		}
+
+		private void push(int pc, int[] threadTags, boolean match) {
+			if(match && matched < 0) {
+				matched = size;
+			}
+			pcs[size] = pc;
+			System.arraycopy(threadTags, 0, tags[size], 0, threadTags.length);
+			size++;
+		}
+
+	}
+
+	/**
+	 * A matcher of the NFA which is given characters one by one.<br>
+	 * A matcher has its own threads, so a matcher must not be shared by threads of Java.
+	 */
+	public final class Matcher {
+
+		private Threads current;
+		private Threads next;
+		private final int[] tags;
+		private final int[] captured;
+		private int length;
+		private int accepted;
+
+		private Matcher() {
+			current = new Threads(size, groups * 2);
+			next = new Threads(size, groups * 2);
+			tags = new int[groups * 2];
+			captured = new int[groups * 2];
+			reset();
+		}
+
+		private void add(Threads threads, int pc) {
+			int old;
+
+			if(!threads.mark(pc)) {
+				return;
+			}
+			switch(ops[pc]) {
+			case SPLIT:
+				add(threads, xs[pc]);
+				add(threads, ys[pc]);
+				break;
+			case JUMP:
+				add(threads, xs[pc]);
+				break;
+			case SAVE:
+				old = tags[xs[pc]];
+				tags[xs[pc]] = length;
+				add(threads, pc + 1);
+				tags[xs[pc]] = old;
+				break;
+			default:
+				threads.push(pc, tags, ops[pc] == MATCH);
+				break;
+			}
+		}
+
+		private void accept(Threads threads) {
+			if(threads.matched >= 0) {
+				accepted = length;
+				System.arraycopy(threads.tags[threads.matched], 0, captured, 0, captured.length);
+			}
+		}
+
+		/**
+		 * resets this matcher to match from the start.
+		 */
+		public void reset() {
+			length = 0;
+			accepted = -1;
+			Arrays.fill(tags, -1);
+			current.clear();
+			add(current, 0);
+			accept(current);
+		}
+
+		/**
+		 * gives the next character to this matcher.
+		 *
+		 * @param ch the character
+		 * @return true if the NFA can match more characters
+		 */
+		public boolean step(char ch) {
+			Threads swap;
+
+			length++;
+			next.clear();
+			for(int i = 0; i < current.size; i++) {
+				int pc = current.pcs[i];
+
+				if(ops[pc] == CHAR && tests[pc].test(ch)) {
+					System.arraycopy(current.tags[i], 0, tags, 0, tags.length);
+					add(next, pc + 1);
+				}
+			}
+			accept(next);
+			swap = current;
+			current = next;
+			next = swap;
+			return current.size > 0;
+		}
+
+		/**
+		 * gets the number of groups.
+		 *
+		 * @return the number of groups
+		 */
+		public int groups() {
+			return groups;
+		}
+
+		/**
+		 * gets the length of the longest match of given characters.
+		 *
+		 * @return the length or -1 if no characters are matched
+		 */
+		public int accepted() {
+			return accepted;
+		}
+
+		/**
+		 * gets the start of the given group in the longest match.
+		 *
+		 * @param group number of the group, 0 is the whole match
+		 * @return offset of the start or -1 if the group is not matched
+		 */
+		public int start(int group) {
+			return group == 0 ? (accepted < 0 ? -1 : 0) : captured[group * 2 - 2];
+		}
+
+		/**
+		 * gets the end of the given group in the longest match.
+		 *
+		 * @param group number of the group, 0 is the whole match
+		 * @return offset next to the end or -1 if the group is not matched
+		 */
+		public int end(int group) {
+			return group == 0 ? accepted : captured[group * 2 - 1];
+		}
+
+	}
+
+	private int[] ops = new int[16];
+	private int[] xs = new int[16];
+	private int[] ys = new int[16];
+	private final List<Predicate<Character>> charsets = new ArrayList<Predicate<Character>>();
+	private final IntPredicate[] tests;
+	private int size = 0;
+	private final int groups;
+
+	/*package*/ TaggedNFA(Fragment fragment, int groups, Function<Predicate<Character>, IntPredicate> compiler) {
+		this.groups = groups;
+		fragment.emit(this);
+		emit(MATCH, 0, 0, null);
+
+		tests = new IntPredicate[size];
+		for(int i = 0; i < size; i++) {
+			if(ops[i] == CHAR) {
+				tests[i] = compiler.apply(charsets.get(i));
+			}
+		}
+		charsets.clear();
+	}
+
+	private int emit(int op, int x, int y, Predicate<Character> charset) {
+		if(size == ops.length) {
+			ops = Arrays.copyOf(ops, size * 2);
+			xs = Arrays.copyOf(xs, size * 2);
+			ys = Arrays.copyOf(ys, size * 2);
+		}
+		ops[size] = op;
+		xs[size] = x;
+		ys[size] = y;
+		charsets.add(charset);
+		return size++;
+	}
+
+	/*package*/ static Fragment singleton(Predicate<Character> charset) {
+		return nfa -> nfa.emit(CHAR, 0, 0, charset);
+	}
+
+	/*package*/ static Fragment concatenation(List<Fragment> sequence) {
+		return nfa -> {
+			for(Fragment fragment : sequence) {
+				fragment.emit(nfa);
+			}
+		};
+	}
+
+	/*package*/ static Fragment alternation(List<Fragment> alternates) {
+		return nfa -> {
+			int[] jumps = new int[alternates.size() - 1];
+
+			for(int i = 0; i < jumps.length; i++) {
+				int split = nfa.emit(SPLIT, nfa.size + 1, 0, null);
+
+				alternates.get(i).emit(nfa);
+				jumps[i] = nfa.emit(JUMP, 0, 0, null);
+				nfa.ys[split] = nfa.size;
+			}
+			alternates.get(jumps.length).emit(nfa);
+			for(int jump : jumps) {
+				nfa.xs[jump] = nfa.size;
+			}
+		};
+	}
+
+	/*package*/ static Fragment repetition(Fragment fragment, boolean nullable) {
+		return nfa -> {
+			int start = nfa.size;
+
+			if(nullable) {
+				nfa.emit(SPLIT, start + 1, 0, null);
+				fragment.emit(nfa);
+				nfa.emit(JUMP, start, 0, null);
+				nfa.ys[start] = nfa.size;
+			} else {
+				fragment.emit(nfa);
+				nfa.emit(SPLIT, start, nfa.size + 1, null);
+			}
+		};
+	}
+
+	/*package*/ static Fragment group(Fragment fragment, int group) {
+		return nfa -> {
+			nfa.emit(SAVE, group * 2 - 2, 0, null);
+			fragment.emit(nfa);
+			nfa.emit(SAVE, group * 2 - 1, 0, null);
+		};
+	}
+
+	/**
+	 * gets the number of groups.
+	 *
+	 * @return the number of groups
+	 */
+	public int groups() {
+		return groups;
+	}
+
+	/**
+	 * returns true if the NFA matches the empty string.
+	 *
+	 * @return true if the empty string is matched
+	 */
+	public boolean nullable() {
+		return matcher().accepted() == 0;
+	}
+
+	/**
+	 * creates a new matcher of this NFA.
+	 *
+	 * @return the matcher
+	 */
+	public Matcher matcher() {
+		return new Matcher();
+	}
+
+}
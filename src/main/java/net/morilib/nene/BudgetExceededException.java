@@ -0,0 +1,64 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+/**
+ * Exception thrown when a match exhausts its budget.
+ */
+public class BudgetExceededException extends NeneException {
+
+	/**
+	 * Kinds of budget.
+	 */
+	public static enum Kind {
+
+		/**
+		 * the number of steps of patterns.
+		 */
+		STEPS,
+
+		/**
+		 * the number of characters read again.
+		 */
+		REREAD,
+
+		/**
+		 * the wall-clock time.
+		 */
+		TIME,
+
+		/**
+		 * the thread which started the match is interrupted.
+		 */
+		INTERRUPTED
+
+	}
+
+	private final Kind kind;
+
+	/**
+	 * creates exception.
+	 *
+	 * @param kind the kind of exhausted budget
+	 */
+	public BudgetExceededException(Kind kind) {
+		super("budget exceeded: " + kind);
+		this.kind = kind;
+	}
+
+	/**
+	 * gets the kind of exhausted budget.
+	 *
+	 * @return the kind
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event which is recorded when the buffer of pushed back characters grows.
+ */
+@Name("net.morilib.nene.BufferGrowth")
+@Label("Buffer Growth")
+@Category("Nene")
+@Description("The buffer of pushed back characters grows")
+/*package*/ final class BufferGrowthEvent extends Event {
+
+	@Label("Old Size")
+	/*package*/ int oldSize;
+
+	@Label("New Size")
+	/*package*/ int newSize;
+
+	@Label("Pending Characters")
+	/*package*/ int pending;
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event which is recorded when characters to push back exceed the maximum size of the buffer.
+ */
+@Name("net.morilib.nene.BufferOverflow")
+@Label("Buffer Overflow")
+@Category("Nene")
+@Description("Characters to push back exceed the maximum size of the buffer")
+/*package*/ final class BufferOverflowEvent extends Event {
+
+	@Label("Requested Size")
+	/*package*/ int requested;
+
+	@Label("Maximum Size")
+	/*package*/ int limit;
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+
+import net.morilib.automaton2.RegexParseException;
+import net.morilib.automaton2.RegexParser;
+import net.morilib.automaton2.TaggedNFA;
+
+/**
+ * A matcher of a regular expression which captures offsets of groups.<br>
+ * The regular expression is compiled to a tagged NFA when it is matched at first or by {@link Nene#warmUp()},
+ * and the characters are read once to find both the longest match and the groups.
+ * Sets of characters of the NFA are tested by bitmaps of {@link CharClass}.
+ */
+/*package*/ final class CaptureMatcher implements Compilable {
+
+	private final String regex;
+
+	/*
+	 * the NFA is published to threads by this volatile field
+	 */
+	private volatile TaggedNFA nfa;
+
+	/*package*/ CaptureMatcher(String regex) {
+		this.regex = regex;
+		RegexMatcher.register(this);
+	}
+
+	private TaggedNFA nfa() {
+		TaggedNFA result = nfa;
+
+		if(result == null) {
+			synchronized(this) {
+				if((result = nfa) == null) {
+					try {
+						nfa = result = RegexParser.parseTagged(regex, charset -> {
+							CharClass charClass = new CharClass(regex, charset);
+
+							return ch -> charClass.contains((char)ch);
+						});
+						RegexMatcher.compiled(this);
+					} catch(RegexParseException e) {
+						throw new NeneException("invalid regular expression: " + regex, e);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void compile() {
+		nfa();
+	}
+
+	/**
+	 * gets the captures of this matcher which are reused by matches of the given state.<br>
+	 * Each state of input has its own matcher of the NFA, so a step allocates nothing.
+	 *
+	 * @param match state of input
+	 * @return the captures
+	 * @throws NeneException syntax error
+	 */
+	/*package*/ Captures captures(Nene.MatchInfo<?> match) {
+		Captures result;
+
+		if(match.captures == null) {
+			match.captures = new IdentityHashMap<CaptureMatcher, Captures>();
+		}
+		if((result = match.captures.get(this)) == null) {
+			match.captures.put(this, result = new Captures(nfa().matcher(), match.match.scanned));
+		}
+		return result;
+	}
+
+	/**
+	 * scans the given sequence and captures groups.<br>
+	 * The longest matched characters are scanned and characters read after them are pushed back.
+	 * If the regular expression is not matched, all read characters are left in the buffer
+	 * to be pushed back by the caller.
+	 *
+	 * @param sequence sequence to scan
+	 * @param captures captures of this matcher to which groups are written
+	 * @param start index of the first character to scan
+	 * @return true if the regular expression is matched
+	 * @throws IOException I/O exception
+	 */
+	/*package*/ boolean scan(Sequence sequence, Captures captures, int start) throws IOException {
+		TaggedNFA.Matcher matcher = captures.matcher;
+		ScanBuffer scanned = captures.scanned;
+		int ch;
+
+		matcher.reset();
+		captures.start = start;
+		scanned.clear();
+		while((ch = sequence.read()) >= 0) {
+			scanned.append((char)ch);
+			if(!matcher.step((char)ch)) {
+				break;
+			}
+		}
+		return scanned.accept(sequence, matcher.accepted());
+	}
+
+	/**
+	 * returns true if the regular expression matches the empty string.<br>
+	 * The regular expression is not compiled by this method.
+	 *
+	 * @return true if the empty string is matched
+	 */
+	/*package*/ boolean nullable() {
+		return RegexMatcher.nullable(regex);
+	}
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import net.morilib.automaton2.TaggedNFA;
+
+/**
+ * Groups captured by a regular expression.<br>
+ * Each pair of parentheses of the regular expression is a group
+ * which is numbered from 1 in the order of its left parenthesis, and the group 0 is the whole match.
+ * Captures are a view of the scanned characters which is valid only while the action is executed,
+ * because the captures are reused by the following matches.
+ */
+public final class Captures {
+
+	/*package*/ final TaggedNFA.Matcher matcher;
+	/*package*/ final ScanBuffer scanned;
+	/*package*/ int start;
+
+	/*package*/ Captures(TaggedNFA.Matcher matcher, ScanBuffer scanned) {
+		this.matcher = matcher;
+		this.scanned = scanned;
+	}
+
+	/**
+	 * gets the number of groups except the whole match.
+	 *
+	 * @return the number of groups
+	 */
+	public int groups() {
+		return matcher.groups();
+	}
+
+	/**
+	 * gets the first index of the given group.
+	 *
+	 * @param group number of the group
+	 * @return the first index or -1 if the group is not matched
+	 */
+	public int start(int group) {
+		int result = matcher.start(group);
+
+		return result < 0 ? -1 : start + result;
+	}
+
+	/**
+	 * gets the index next to the last character of the given group.
+	 *
+	 * @param group number of the group
+	 * @return the last index or -1 if the group is not matched
+	 */
+	public int end(int group) {
+		int result = matcher.end(group);
+
+		return result < 0 ? -1 : start + result;
+	}
+
+	/**
+	 * gets the characters of the given group.
+	 *
+	 * @param group number of the group
+	 * @return the characters or null if the group is not matched
+	 */
+	public CharSequence group(int group) {
+		int result = matcher.start(group);
+
+		return result < 0 ? null : scanned.subSequence(result, matcher.end(group));
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.function.Predicate;
+
+import net.morilib.automaton2.RegexParseException;
+import net.morilib.automaton2.RegexParser;
+
+/**
+ * A class of characters tested by a bitmap.<br>
+ * The class is written by a set of characters of regular expressions like "[ \t]" or given by a predicate,
+ * and the set is parsed by {@link RegexParser} so that it matches the same characters as in regular expressions.
+ * The bitmap is computed by blocks of 256 characters when a character of the block is tested at first.
+ */
+/*package*/ final class CharClass {
+
+	private static final int BLOCK_SIZE = 256;
+
+	/*
+	 * the bits are published to threads through the final field
+	 */
+	private static final class Block {
+
+		private final long[] bits = new long[BLOCK_SIZE / 64];
+
+		private Block(Predicate<Character> charset, int high) {
+			for(int i = 0; i < BLOCK_SIZE; i++) {
+				if(charset.test((char)(high * BLOCK_SIZE + i))) {
+					bits[i >>> 6] |= 1L << i;
+				}
+			}
+		}
+
+	}
+
+	private final String charClass;
+	private final Predicate<Character> charset;
+	private final Block[] blocks = new Block[65536 / BLOCK_SIZE];
+
+	/*package*/ CharClass(String charClass) {
+		try {
+			this.charClass = charClass;
+			this.charset = RegexParser.parseCharset(charClass);
+		} catch(RegexParseException e) {
+			throw new NeneException("invalid set of characters: " + charClass, e);
+		}
+	}
+
+	/*package*/ CharClass(String name, Predicate<Character> charset) {
+		this.charClass = name;
+		this.charset = charset;
+	}
+
+	private long[] bits(char ch) {
+		Block block = blocks[ch / BLOCK_SIZE];
+
+		if(block == null) {
+			blocks[ch / BLOCK_SIZE] = block = new Block(charset, ch / BLOCK_SIZE);
+		}
+		return block.bits;
+	}
+
+	/**
+	 * returns true if the given character is in this class.
+	 *
+	 * @param ch character to test
+	 * @return true if the character is in this class
+	 */
+	/*package*/ boolean contains(char ch) {
+		return (bits(ch)[(ch % BLOCK_SIZE) >>> 6] & (1L << ch)) != 0;
+	}
+
+	/**
+	 * finds the first character which is in this class (or not in this class).
+	 *
+	 * @param array characters to test
+	 * @param start the first index
+	 * @param end the index next to the last
+	 * @param member true if characters in this class are skipped
+	 * @return index of the found character or end if not found
+	 */
+	/*package*/ int span(char[] array, int start, int end, boolean member) {
+		long[] latin = bits('\0');
+
+		for(int i = start; i < end; i++) {
+			char ch = array[i];
+			boolean contains = ch < BLOCK_SIZE ? (latin[ch >>> 6] & (1L << ch)) != 0 : contains(ch);
+
+			if(contains != member) {
+				return i;
+			}
+		}
+		return end;
+	}
+
+	@Override
+	public String toString() {
+		return charClass;
+	}
+
+}
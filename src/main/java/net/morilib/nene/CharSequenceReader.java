@@ -0,0 +1,57 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.io.Reader;
+
+/**
+ * A reader of a character sequence which can be reset to read another sequence.<br>
+ * Unlike StringReader, this reader is not synchronized.
+ */
+/*package*/ final class CharSequenceReader extends Reader {
+
+	private CharSequence sequence;
+	private int index;
+
+	/*package*/ CharSequenceReader reset(CharSequence sequence) {
+		return reset(sequence, 0);
+	}
+
+	/*package*/ CharSequenceReader reset(CharSequence sequence, int start) {
+		this.sequence = sequence;
+		this.index = start;
+		return this;
+	}
+
+	@Override
+	public int read() {
+		return index < sequence.length() ? sequence.charAt(index++) : -1;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) {
+		int length = Math.min(len, sequence.length() - index);
+
+		if(len == 0) {
+			return 0;
+		} else if(length <= 0) {
+			return -1;
+		}
+		for(int i = 0; i < length; i++) {
+			cbuf[off + i] = sequence.charAt(index++);
+		}
+		return length;
+	}
+
+	@Override
+	public void close() {
+		// nothing to do
+	}
+
+}
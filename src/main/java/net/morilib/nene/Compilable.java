@@ -0,0 +1,23 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+/**
+ * A matcher which is compiled when it is matched at first or by {@link Nene#warmUp()}.
+ */
+/*package*/ interface Compilable {
+
+	/**
+	 * compiles this matcher if it is not compiled yet.
+	 *
+	 * @throws NeneException syntax error
+	 */
+	public void compile();
+
+}
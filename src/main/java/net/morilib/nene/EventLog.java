@@ -0,0 +1,121 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.Arrays;
+
+/**
+ * A truncatable log of events which are sent to a listener.<br>
+ * Events are kept in arrays and characters of tokens are copied to one array,
+ * so no object is created for an event.
+ * Repetitions mark the log before each iteration and truncate the log to the mark if the iteration fails.
+ * Any event can be backtracked until the whole match succeeds,
+ * so the log is sent to the listener only after the match succeeds.
+ */
+/*package*/ final class EventLog {
+
+	private static final int INIT_SIZE = 64;
+	private static final byte ENTER = 0;
+	private static final byte EXIT = 1;
+	private static final byte TOKEN = 2;
+
+	private final ParseListener listener;
+	private byte[] kinds = new byte[INIT_SIZE];
+	private String[] names = new String[INIT_SIZE];
+	private int[] starts = new int[INIT_SIZE];
+	private int[] ends = new int[INIT_SIZE];
+	private int[] offsets = new int[INIT_SIZE];
+	private char[] text = new char[INIT_SIZE];
+	private int size = 0;
+	private int textLength = 0;
+
+	/*package*/ EventLog(ParseListener listener) {
+		this.listener = listener;
+	}
+
+	private void add(byte kind, String name, int start, int end, int offset) {
+		if(size == kinds.length) {
+			kinds = Arrays.copyOf(kinds, size * 2);
+			names = Arrays.copyOf(names, size * 2);
+			starts = Arrays.copyOf(starts, size * 2);
+			ends = Arrays.copyOf(ends, size * 2);
+			offsets = Arrays.copyOf(offsets, size * 2);
+		}
+		kinds[size] = kind;
+		names[size] = name;
+		starts[size] = start;
+		ends[size] = end;
+		offsets[size] = offset;
+		size++;
+	}
+
+	/*package*/ void enter(String name, int start) {
+		add(ENTER, name, start, start, textLength);
+	}
+
+	/*package*/ void exit(String name, int start, int end) {
+		add(EXIT, name, start, end, textLength);
+	}
+
+	/*package*/ void token(String name, int start, ScanBuffer scanned) {
+		int offset = textLength;
+
+		if(offset + scanned.length() > text.length) {
+			text = Arrays.copyOf(text, Math.max(text.length * 2, offset + scanned.length()));
+		}
+		System.arraycopy(scanned.array(), 0, text, offset, scanned.length());
+		textLength += scanned.length();
+		add(TOKEN, name, start, start + scanned.length(), offset);
+	}
+
+	/**
+	 * marks the log before a pattern which may be backtracked.
+	 *
+	 * @return the mark
+	 */
+	/*package*/ int mark() {
+		return size;
+	}
+
+	/**
+	 * removes events after the given mark because the pattern is backtracked.
+	 *
+	 * @param mark the mark
+	 */
+	/*package*/ void truncate(int mark) {
+		if(mark < size) {
+			textLength = offsets[mark];
+			Arrays.fill(names, mark, size, null);
+			size = mark;
+		}
+	}
+
+	/**
+	 * sends the events in the log to the listener after the whole match succeeds.
+	 */
+	/*package*/ void flush() {
+		for(int i = 0; i < size; i++) {
+			switch(kinds[i]) {
+			case ENTER:
+				listener.enter(names[i], starts[i]);
+				break;
+			case EXIT:
+				listener.exit(names[i], starts[i], ends[i]);
+				break;
+			default:
+				listener.token(names[i], starts[i], ends[i], text, offsets[i]);
+				break;
+			}
+			names[i] = null;
+		}
+		size = 0;
+		textLength = 0;
+	}
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.morilib.automaton2.AbstractBuiltNFA;
+import net.morilib.automaton2.RegexParseException;
+import net.morilib.automaton2.RegexParser;
+import net.morilib.automaton2.SubsetDFA;
+
+/**
+ * A lexer which splits input into tokens.<br>
+ * A lexer is defined by an ordered set of rules of a regular expression and a token type.
+ * All rules are compiled to one DFA which finds the longest token,
+ * and the earlier rule has priority if rules match the same characters.
+ * Empty tokens are not recognized.
+ */
+public final class Lexer {
+
+	/**
+	 * the token type which represents that no token is found.
+	 */
+	public static final int NO_TOKEN = -1;
+
+	private static final int SKIP = -2;
+
+	/**
+	 * A stream of tokens.<br>
+	 * The stream does not create an object for each token,
+	 * the type and the position of the current token are got from the stream.
+	 */
+	public static final class Tokens {
+
+		private final Lexer lexer;
+		private final Nene.Input<Void> input;
+		private final ScanBuffer skipped = new ScanBuffer();
+		private int type = NO_TOKEN;
+		private int start = 0;
+		private int end = 0;
+
+		private Tokens(Lexer lexer, Reader reader) {
+			this.lexer = lexer;
+			this.input = new Nene.Input<Void>(new Nene<Void>(), reader);
+		}
+
+		/**
+		 * reads the next token.
+		 *
+		 * @return true if a token is read, false if the input is ended
+		 * @throws IOException I/O exception
+		 * @throws NeneException if the input is not a token
+		 */
+		public boolean next() throws IOException {
+			int ch;
+
+			type = lexer.scan(input, skipped, input.scanned);
+			start = end + skipped.length();
+			end = start + input.scanned.length();
+			if(type >= 0) {
+				return true;
+			} else if((ch = input.read()) < 0) {
+				return false;
+			} else {
+				input.unread(ch);
+				throw new NeneException("no token at " + start);
+			}
+		}
+
+		/**
+		 * gets the type of the current token.
+		 *
+		 * @return the type of the token
+		 */
+		public int type() {
+			return type;
+		}
+
+		/**
+		 * gets the index of the first character of the current token.
+		 *
+		 * @return the first index
+		 */
+		public int start() {
+			return start;
+		}
+
+		/**
+		 * gets the index next to the last character of the current token.
+		 *
+		 * @return the last index
+		 */
+		public int end() {
+			return end;
+		}
+
+		/**
+		 * gets a view of the characters of the current token.<br>
+		 * The view is valid until the next token is read.
+		 *
+		 * @return the characters of the token
+		 */
+		public CharSequence text() {
+			return input.scanned;
+		}
+
+	}
+
+	/*
+	 * the DFA and token types of its NFAs, which are published together to threads
+	 */
+	private static final class Compiled {
+
+		private final SubsetDFA dfa;
+		private final int[] types;
+
+		private Compiled(List<AbstractBuiltNFA> nfas, List<Integer> types) {
+			this.dfa = new SubsetDFA(nfas);
+			this.types = new int[types.size()];
+			for(int i = 0; i < this.types.length; i++) {
+				this.types[i] = types.get(i);
+			}
+		}
+
+	}
+
+	private final List<AbstractBuiltNFA> nfas = new ArrayList<AbstractBuiltNFA>();
+	private final List<Integer> types = new ArrayList<Integer>();
+	private Compiled compiled;
+
+	/**
+	 * creates a lexer which has no rule.
+	 */
+	public Lexer() {}
+
+	private Lexer add(String regex, int type) {
+		try {
+			nfas.add(RegexParser.parse(regex));
+			types.add(type);
+			compiled = null;
+			return this;
+		} catch (RegexParseException e) {
+			throw new NeneException("invalid regular expression: " + regex, e);
+		}
+	}
+
+	/**
+	 * adds a rule of a token.
+	 *
+	 * @param regex regular expression of the token
+	 * @param type type of the token which must not be negative
+	 * @return this lexer
+	 */
+	public Lexer rule(String regex, int type) {
+		if(type < 0) {
+			throw new IllegalArgumentException();
+		}
+		return add(regex, type);
+	}
+
+	/**
+	 * adds a rule of characters to be skipped before a token, like white spaces.
+	 *
+	 * @param regex regular expression of characters to be skipped
+	 * @return this lexer
+	 */
+	public Lexer skip(String regex) {
+		return add(regex, SKIP);
+	}
+
+	private Compiled compile() {
+		Compiled result = compiled;
+
+		if(result == null) {
+			compiled = result = new Compiled(nfas, types);
+		}
+		return result;
+	}
+
+	/*
+	 * scans the longest token and pushes back characters after the token.
+	 */
+	private int scanLongest(Sequence input, ScanBuffer scanned) throws IOException {
+		Compiled compiled = compile();
+		SubsetDFA.State state = compiled.dfa.getStartState();
+		int type = NO_TOKEN;
+		int length = 0;
+
+		scanned.clear();
+		while(true) {
+			int ch = input.read();
+
+			if(ch < 0) {
+				break;
+			} else if((state = compiled.dfa.transit(state, (char)ch)).isDead()) {
+				input.unread(ch);
+				break;
+			}
+			scanned.append((char)ch);
+			if(state.isAccept()) {
+				type = compiled.types[state.getAccept()];
+				length = scanned.length();
+			}
+		}
+
+		scanned.accept(input, length);
+		return type;
+	}
+
+	/**
+	 * scans a token.<br>
+	 * If no token is found, the scanned token is empty and
+	 * the skipped characters must be pushed back by the caller.
+	 *
+	 * @param input input to scan
+	 * @param skipped buffer to which skipped characters are written
+	 * @param scanned buffer to which characters of the token are written
+	 * @return the type of the token or {@link #NO_TOKEN}
+	 * @throws IOException I/O exception
+	 */
+	/*package*/ int scan(Sequence input, ScanBuffer skipped, ScanBuffer scanned) throws IOException {
+		int type;
+
+		skipped.clear();
+		while((type = scanLongest(input, scanned)) == SKIP) {
+			skipped.append(scanned);
+		}
+		return type;
+	}
+
+	/**
+	 * returns a stream of tokens of the given input.
+	 *
+	 * @param reader the input
+	 * @return stream of tokens
+	 */
+	public Tokens tokens(Reader reader) {
+		return new Tokens(this, reader);
+	}
+
+}
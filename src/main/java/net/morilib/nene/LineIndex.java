@@ -0,0 +1,99 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.Arrays;
+
+/**
+ * An index of starts of lines in the input.<br>
+ * The index is recorded while characters are read if it is enabled by {@link Nene#lineIndex(boolean)}.
+ * Lines are separated by '\n' and only starts of lines are kept in an array of ints,
+ * so an index is resolved to a line and a column by binary search without reading the input again.
+ * Lines and columns start at 1.
+ */
+public final class LineIndex {
+
+	private static final int INIT_SIZE = 16;
+
+	private int[] starts = new int[INIT_SIZE];
+	private int lines = 0;
+	private int read = 0;
+
+	/*package*/ LineIndex() {}
+
+	private void newLine(int start) {
+		if(lines == starts.length) {
+			starts = Arrays.copyOf(starts, starts.length * 2);
+		}
+		starts[lines++] = start;
+	}
+
+	/*package*/ void read(int ch) {
+		read++;
+		if(ch == '\n') {
+			newLine(read);
+		}
+	}
+
+	/*package*/ void read(char[] array, int start, int end) {
+		for(int i = start; i < end; i++) {
+			read(array[i]);
+		}
+	}
+
+	/*
+	 * makes an index of the given text whose input read by this index starts at the given start.
+	 */
+	/*package*/ LineIndex moveTo(CharSequence text, int start) {
+		LineIndex result = new LineIndex();
+
+		for(int i = 0; i < start; i++) {
+			result.read(text.charAt(i));
+		}
+		for(int i = 0; i < lines; i++) {
+			result.newLine(starts[i] + start);
+		}
+		result.read += read;
+		return result;
+	}
+
+	/**
+	 * gets the number of lines which are read.
+	 *
+	 * @return the number of lines
+	 */
+	public int lines() {
+		return lines + 1;
+	}
+
+	/**
+	 * gets the line of the given index.
+	 *
+	 * @param index index of a character
+	 * @return the line
+	 */
+	public int lineOf(int index) {
+		int found = Arrays.binarySearch(starts, 0, lines, index);
+
+		return found >= 0 ? found + 2 : -found;
+	}
+
+	/**
+	 * gets the column of the given index.
+	 *
+	 * @param index index of a character
+	 * @return the column
+	 */
+	public int columnOf(int index) {
+		int line = lineOf(index);
+
+		return line > 1 ? index - starts[line - 2] + 1 : index + 1;
+	}
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event which is recorded from start to end of a match.
+ */
+@Name("net.morilib.nene.Match")
+@Label("Match")
+@Category("Nene")
+@Description("A match of a pattern")
+/*package*/ final class MatchEvent extends Event {
+
+	@Label("Matched")
+	/*package*/ boolean matched;
+
+	@Label("Characters Consumed")
+	/*package*/ int consumed;
+
+	@Label("Characters Pushed Back")
+	/*package*/ long backtracked;
+
+}
@@ -12,15 +12,22 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collector;
 
-import net.morilib.automaton2.AbstractBuiltNFA;
-import net.morilib.automaton2.RegexParseException;
 import net.morilib.automaton2.RegexParser;
 
 /**
@@ -47,9 +54,38 @@ public class Nene<A> {
 		 */
 		public final A attr;
 
-		private Result(int index, A attr) {
+		/**
+		 * Index of lines of the input or null if it is not enabled.
+		 */
+		public final LineIndex lines;
+
+		/*package*/ Result(int index, A attr) {
+			this(index, attr, null);
+		}
+
+		/*package*/ Result(int index, A attr, LineIndex lines) {
 			this.index = index;
 			this.attr = attr;
+			this.lines = lines;
+		}
+
+	}
+
+	/**
+	 * Result of searching which has the index at which the match starts.
+	 *
+	 * @param <A> type of attribute
+	 */
+	public static class SearchResult<A> extends Result<A> {
+
+		/**
+		 * First index of matching.
+		 */
+		public final int start;
+
+		/*package*/ SearchResult(int start, int index, A attr, LineIndex lines) {
+			super(index, attr, lines);
+			this.start = start;
 		}
 
 	}
@@ -75,6 +111,26 @@ public class Nene<A> {
 
 	}
 
+	/**
+	 * Action which takes indices of the matched characters.
+	 *
+	 * @param <A> type of attribute
+	 */
+	@FunctionalInterface
+	public static interface OffsetAction<A> {
+
+		/**
+		 * applies this action.
+		 *
+		 * @param start first index of the matched characters
+		 * @param end last index of the matched characters
+		 * @param attr inherited attribute
+		 * @return synthesized attribute
+		 */
+		public A apply(int start, int end, A attr);
+
+	}
+
 	/**
 	 * Builder of parsing executer.
 	 *
@@ -82,7 +138,43 @@ public class Nene<A> {
 	 */
 	public static abstract class Builder<A> {
 
-		/*package*/ abstract Executer<A> build();
+		private Rule<A> rule;
+		private Prefilter prefilter;
+		private boolean filtered;
+
+		/*package*/ abstract Node<A> node();
+
+		/*package*/ Rule<A> build() {
+			if(rule == null) {
+				rule = node().optimize().compile();
+			}
+			return rule;
+		}
+
+		/*package*/ void modified() {
+			rule = null;
+			prefilter = null;
+			filtered = false;
+		}
+
+		private Prefilter prefilter() {
+			String regex;
+
+			if(!filtered) {
+				regex = node().optimize().leadingRegex();
+				prefilter = regex != null ? Prefilter.of(regex, Nene.compileRegex(regex)) : null;
+				filtered = true;
+			}
+			return prefilter;
+		}
+
+		/*package*/ Result<A> match(MatchInfo<A> match, A attr) throws IOException {
+			match.index = 0;
+			match.attr(attr);
+			return match.run(build()) ? new Result<A>(match.index, match.attr(), match.match.lines) : null;
+		}
+
+		/*package*/ abstract MatchInfo<A> newMatchInfo(Reader reader);
 
 		/**
 		 * starts matching with the given reader and initial attribute.
@@ -92,7 +184,9 @@ public class Nene<A> {
 		 * @return result of matching or null if pattern is not matched
 		 * @throws IOException I/O exception
 		 */
-		public abstract Result<A> match(Reader reader, A attr) throws IOException;
+		public Result<A> match(Reader reader, A attr) throws IOException {
+			return match(newMatchInfo(reader), attr);
+		}
 
 		/**
 		 * starts matching with the given string and inital attribute
@@ -111,6 +205,71 @@ public class Nene<A> {
 			}
 		}
 
+		/**
+		 * searches the first position from which this pattern is matched.<br>
+		 * If the pattern starts with a regular expression, positions are filtered by the literal prefix
+		 * or the first characters of the regular expression before the pattern is matched,
+		 * and the search stops without trying positions if no match of the regular expression is left.
+		 * The state of input is reused for all positions,
+		 * and the index of lines of the result is an index of the text if it is enabled.
+		 *
+		 * @param text text to search
+		 * @param from the first index to search
+		 * @param attr initial attribute
+		 * @return result of matching or null if pattern is not found
+		 */
+		public SearchResult<A> search(CharSequence text, int from, A attr) {
+			Prefilter prefilter = prefilter();
+			CharSequenceReader reader = new CharSequenceReader();
+			MatchInfo<A> match = newMatchInfo(reader);
+			int limit = -1;
+
+			try {
+				for(int start = from; start >= 0 && start <= text.length(); start++) {
+					Result<A> result;
+
+					if(prefilter != null && (start = prefilter.next(text, start)) < 0) {
+						break;
+					} else if(prefilter != null && start > limit && (limit = prefilter.end(text, start)) < 0) {
+						break;
+					}
+
+					match.match.reset(reader.reset(text, start));
+					match.reset();
+					if((result = match(match, attr)) != null) {
+						return new SearchResult<A>(start,
+								start + result.index,
+								result.attr,
+								result.lines != null ? result.lines.moveTo(text, start) : null);
+					}
+				}
+				return null;
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * searches the first position from which this pattern is matched.
+		 *
+		 * @param text text to search
+		 * @param attr initial attribute
+		 * @return result of matching or null if pattern is not found
+		 */
+		public SearchResult<A> search(CharSequence text, A attr) {
+			return search(text, 0, attr);
+		}
+
+		/**
+		 * returns the optimized intermediate representation of this builder.
+		 *
+		 * @return intermediate representation
+		 */
+		@Override
+		public String toString() {
+			return node().optimize().toString();
+		}
+
 	}
 
 	/**
@@ -153,8 +312,6 @@ public class Nene<A> {
 	 */
 	public static abstract class ConditionBuilder<A> extends Builder<A> {
 
-		/*package*/ abstract ConditionBuilder<A> orElse(ConditionMatcher fa, Builder<A> ifTrue);
-
 		/**
 		 * builds matcher which matches the given builder if the matcher is not matched.
 		 *
@@ -189,232 +346,484 @@ public class Nene<A> {
 		 * @param ifTrue builder to match
 		 * @return this instance
 		 */
-		public ConditionBuilder<A> orElse(String regex, Builder<A> ifTrue) {
-			return orElse(compileRegex(regex), ifTrue);
-		}
+		public abstract ConditionBuilder<A> orElse(String regex, Builder<A> ifTrue);
+
+		/**
+		 * makes guards be tried in the order of how often they are matched.<br>
+		 * A guard is tried before a guard declared earlier only if no input is matched by both guards,
+		 * which is tested by intersection of automata when the pattern is built,
+		 * so the result of matching does not change.
+		 *
+		 * @return this builder
+		 */
+		public abstract ConditionBuilder<A> adaptive();
+
+	}
+
+	/**
+	 * Builder of operators.<br>
+	 * An operator of higher precedence binds tighter.
+	 * Operators of the same kind are tried in the order of definition.
+	 * A regular expression of an operator which matches the empty string is rejected by {@link NeneException}.
+	 *
+	 * @param <A> type of attribute
+	 */
+	public static abstract class OperatorBuilder<A> extends Builder<A> {
+
+		/**
+		 * defines a left associative infix operator.
+		 *
+		 * @param regex regular expression of the operator
+		 * @param precedence precedence of the operator
+		 * @param action action which combines attributes of the left and right operands
+		 * @return this instance
+		 */
+		public abstract OperatorBuilder<A> infixLeft(String regex, int precedence, BinaryOperator<A> action);
+
+		/**
+		 * defines a right associative infix operator.
+		 *
+		 * @param regex regular expression of the operator
+		 * @param precedence precedence of the operator
+		 * @param action action which combines attributes of the left and right operands
+		 * @return this instance
+		 */
+		public abstract OperatorBuilder<A> infixRight(String regex, int precedence, BinaryOperator<A> action);
+
+		/**
+		 * defines a prefix operator.
+		 *
+		 * @param regex regular expression of the operator
+		 * @param precedence precedence of the operator
+		 * @param action action which applies to attribute of the operand
+		 * @return this instance
+		 */
+		public abstract OperatorBuilder<A> prefix(String regex, int precedence, UnaryOperator<A> action);
+
+		/**
+		 * defines a postfix operator.
+		 *
+		 * @param regex regular expression of the operator
+		 * @param precedence precedence of the operator
+		 * @param action action which applies to attribute of the operand
+		 * @return this instance
+		 */
+		public abstract OperatorBuilder<A> postfix(String regex, int precedence, UnaryOperator<A> action);
+
+	}
+
+	/**
+	 * A builder which dispatches on the type of the next token.
+	 *
+	 * @param <A> type of attribute
+	 */
+	public static abstract class TokenBuilder<A> extends Builder<A> {
+
+		/**
+		 * adds a branch which matches the given builder after a token of the given type.
+		 *
+		 * @param type type of token
+		 * @param ifMatched builder to match after the token
+		 * @return this builder
+		 */
+		public abstract TokenBuilder<A> on(int type, Builder<A> ifMatched);
+
+		/**
+		 * adds a branch which executes the given action for a token of the given type
+		 * and matches the given builder after the token.<br>
+		 * The action takes a view of the characters of the token.
+		 *
+		 * @param type type of token
+		 * @param action the action
+		 * @param ifMatched builder to match after the token
+		 * @return this builder
+		 */
+		public abstract TokenBuilder<A> on(int type, BiFunction<CharSequence, A, A> action, Builder<A> ifMatched);
+
+		/**
+		 * sets the builder which matches if no branch matches the next token.<br>
+		 * The token is not consumed.
+		 *
+		 * @param builder builder to match
+		 * @return this builder
+		 */
+		public abstract TokenBuilder<A> orElse(Builder<A> builder);
 
 	}
 
 	private final class InnerThenBuilder extends ThenBuilder<A> {
 
-		private List<Executer<A>> executers = new ArrayList<Executer<A>>();
+		private List<Node<A>> nodes = new ArrayList<Node<A>>();
 
 		private InnerThenBuilder() {}
 
 		public ThenBuilder<A> then(String regex) {
-			final ConditionMatcher fa = compileRegex(regex);
-
-			executers.add((match, index, attr) -> {
-				ConditionResult matched = fa.run(match.match);
-				if(matched.matched) {
-					return new Result<A>(index + matched.scanned.length(), attr);
-				} else {
-					match.match.backtrack(matched.scanned);
-					return null;
-				}
-			});
+			nodes.add(new Node.Regex<A>(foldCase(regex)));
+			modified();
 			return this;
 		}
 
 		@Override
 		public ThenBuilder<A> then(Builder<A> builder) {
-			executers.add(builder.build());
+			nodes.add(builder.node());
+			modified();
 			return this;
 		}
 
 		@Override
 		public ThenBuilder<A> then(Executer<A> executer) {
-			executers.add(executer);
+			nodes.add(executer instanceof Node.Ref ? (Node.Ref<A>)executer : new Node.Call<A>(executer));
+			modified();
 			return this;
 		}
 
 		@Override
-		/*package*/ Executer<A> build() {
-			final List<Executer<A>> executers = new ArrayList<Executer<A>>(this.executers);
-			return (match, index, attr) -> {
-				Result<A> result = new Result<A>(index, attr);
-
-				for(Executer<A> executer : executers) {
-					if((result = executer.match(match, result.index, result.attr)) == null) {
-						return null;
-					}
-				}
-				return result;
-			};
+		/*package*/ Node<A> node() {
+			return new Node.Seq<A>(nodes);
 		}
 
 		@Override
-		public Result<A> match(Reader reader, A attr) throws IOException {
-			return build().match(new MatchInfo<A>(new Input<A>(Nene.this, reader)), 0, attr);
+		/*package*/ MatchInfo<A> newMatchInfo(Reader reader) {
+			return Nene.this.newMatchInfo(reader);
 		}
 
 	}
 
 	private final class InnerConditionBuilder extends ConditionBuilder<A> {
 
-		private DelayExecuter now = null;
-		private DelayExecuter last = null;
+		private List<Node.Regex<A>> guards = new ArrayList<Node.Regex<A>>();
+		private List<Node<A>> branches = new ArrayList<Node<A>>();
+		private Node<A> orElse = fail.node();
+		private boolean adaptive = false;
 
-		private class DelayExecuter implements Executer<A> {
+		private InnerConditionBuilder(String regex, Node<A> ifTrue) {
+			guards.add(new Node.Regex<A>(foldCase(regex)));
+			branches.add(ifTrue);
+		}
 
-			private final ConditionMatcher fa;
-			private final Executer<A> ifTrue;
-			private Executer<A> orElse;
+		@Override
+		public ConditionBuilder<A> orElse(Builder<A> orElse) {
+			this.orElse = orElse.node();
+			modified();
+			return this;
+		}
 
-			private DelayExecuter(ConditionMatcher fa, Executer<A> ifTrue, Executer<A> orElse) {
-				this.fa = fa;
-				this.ifTrue = ifTrue;
-				this.orElse = orElse;
-			}
+		@Override
+		public ConditionBuilder<A> orElse(String ifTrue) {
+			return orElse(Nene.this.then(ifTrue));
+		}
 
-			private DelayExecuter(ConditionMatcher fa, Executer<A> ifTrue) {
-				this(fa, ifTrue, fail.build());
-			}
+		@Override
+		public ConditionBuilder<A> orElse(String regex, String ifTrue) {
+			return orElse(regex, Nene.this.then(ifTrue));
+		}
+
+		@Override
+		public ConditionBuilder<A> orElse(String regex, Builder<A> ifTrue) {
+			guards.add(new Node.Regex<A>(foldCase(regex)));
+			branches.add(ifTrue.node());
+			orElse = fail.node();
+			modified();
+			return this;
+		}
 
-			@Override
-			public Result<A> match(MatchInfo<A> match, int index, A attr) throws IOException {
-				ConditionResult matched = fa.run(match.match);
+		@Override
+		public ConditionBuilder<A> adaptive() {
+			adaptive = true;
+			modified();
+			return this;
+		}
 
-				match.match.backtrack(matched.scanned);
-				if(matched.matched) {
-					return ifTrue.match(match, index, attr);
-				} else {
-					return orElse.match(match, index, attr);
-				}
-			}
+		@Override
+		/*package*/ Node<A> node() {
+			return new Node.Choice<A>(guards, branches, orElse, adaptive);
+		}
 
+		@Override
+		/*package*/ MatchInfo<A> newMatchInfo(Reader reader) {
+			return Nene.this.newMatchInfo(reader);
 		}
 
-		private InnerConditionBuilder(ConditionMatcher fa, Executer<A> ifTrue) {
-			now = last = new DelayExecuter(fa, ifTrue);
+	}
+
+	private final class InnerOperatorBuilder extends OperatorBuilder<A> {
+
+		private Node<A> operand;
+		private List<Node.Operators.Operator<A>> prefixes = new ArrayList<Node.Operators.Operator<A>>();
+		private List<Node.Operators.Operator<A>> infixes = new ArrayList<Node.Operators.Operator<A>>();
+		private List<Node.Operators.Operator<A>> postfixes = new ArrayList<Node.Operators.Operator<A>>();
+
+		private InnerOperatorBuilder(Node<A> operand) {
+			this.operand = operand;
 		}
 
 		@Override
-		public ConditionBuilder<A> orElse(Builder<A> orElse) {
-			last.orElse = orElse.build();
+		public OperatorBuilder<A> infixLeft(String regex, int precedence, BinaryOperator<A> action) {
+			infixes.add(new Node.Operators.Operator<A>(foldCase(regex), precedence, true, action));
+			modified();
 			return this;
 		}
 
 		@Override
-		public ConditionBuilder<A> orElse(String ifTrue) {
-			return orElse(Nene.this.then(ifTrue));
+		public OperatorBuilder<A> infixRight(String regex, int precedence, BinaryOperator<A> action) {
+			infixes.add(new Node.Operators.Operator<A>(foldCase(regex), precedence, false, action));
+			modified();
+			return this;
 		}
 
 		@Override
-		public ConditionBuilder<A> orElse(String regex, String ifTrue) {
-			return orElse(regex, Nene.this.then(ifTrue));
+		public OperatorBuilder<A> prefix(String regex, int precedence, UnaryOperator<A> action) {
+			prefixes.add(new Node.Operators.Operator<A>(foldCase(regex), precedence, action));
+			modified();
+			return this;
 		}
 
 		@Override
-		/*package*/ ConditionBuilder<A> orElse(ConditionMatcher fa, Builder<A> ifTrue) {
-			DelayExecuter before = last;
+		public OperatorBuilder<A> postfix(String regex, int precedence, UnaryOperator<A> action) {
+			postfixes.add(new Node.Operators.Operator<A>(foldCase(regex), precedence, action));
+			modified();
+			return this;
+		}
 
-			last = new DelayExecuter(fa, ifTrue.build());
-			if(before != null) {
-				before.orElse = last;
-			}
+		@Override
+		/*package*/ Node<A> node() {
+			return new Node.Operators<A>(operand, prefixes, infixes, postfixes, false);
+		}
+
+		@Override
+		/*package*/ MatchInfo<A> newMatchInfo(Reader reader) {
+			return Nene.this.newMatchInfo(reader);
+		}
+
+	}
+
+	private final class InnerTokenBuilder extends TokenBuilder<A> {
+
+		private Lexer lexer;
+		private List<Integer> types = new ArrayList<Integer>();
+		private List<BiFunction<CharSequence, A, A>> actions = new ArrayList<BiFunction<CharSequence, A, A>>();
+		private List<Node<A>> branches = new ArrayList<Node<A>>();
+		private Node<A> orElse = fail.node();
+
+		private InnerTokenBuilder(Lexer lexer) {
+			this.lexer = lexer;
+		}
+
+		@Override
+		public TokenBuilder<A> on(int type, Builder<A> ifMatched) {
+			return on(type, null, ifMatched);
+		}
+
+		@Override
+		public TokenBuilder<A> on(int type, BiFunction<CharSequence, A, A> action, Builder<A> ifMatched) {
+			types.add(type);
+			actions.add(action);
+			branches.add(ifMatched.node());
+			modified();
 			return this;
 		}
 
 		@Override
-		/*package*/ Executer<A> build() {
-			return now;
+		public TokenBuilder<A> orElse(Builder<A> orElse) {
+			this.orElse = orElse.node();
+			modified();
+			return this;
 		}
 
 		@Override
-		public Result<A> match(Reader reader, A attr) throws IOException {
-			return build().match(new MatchInfo<A>(new Input<A>(Nene.this, reader)), 0, attr);
+		/*package*/ Node<A> node() {
+			return new Node.TokenSwitch<A>(lexer, types, actions, branches, orElse);
+		}
+
+		@Override
+		/*package*/ MatchInfo<A> newMatchInfo(Reader reader) {
+			return Nene.this.newMatchInfo(reader);
 		}
 
 	}
 
 	private class InnerBuilder extends Builder<A> {
 
-		private Executer<A> executer;
+		private Node<A> node;
 
-		private InnerBuilder(Executer<A> executer) {
-			this.executer = executer;
+		private InnerBuilder(Node<A> node) {
+			this.node = node;
 		}
 
 		@Override
-		/*package*/ Executer<A> build() {
-			return executer;
+		/*package*/ Node<A> node() {
+			return node;
 		}
 
 		@Override
-		public Result<A> match(Reader reader, A attr) throws IOException {
-			return executer.match(new MatchInfo<A>(new Input<A>(Nene.this, reader)), 0, attr);
+		/*package*/ MatchInfo<A> newMatchInfo(Reader reader) {
+			return Nene.this.newMatchInfo(reader);
 		}
 
 	};
 
-	private static class Input<A> implements Sequence {
+	/*package*/ static class Input<A> implements Sequence {
 
 		private static final int INIT_BUFSIZE = 64;
 
-		private Nene<A> nene;
+		private final Nene<A> nene;
 		private Reader reader;
 		private char[] buffer = new char[INIT_BUFSIZE];
-		private int bufferPtr = -1;
-		private int bufferMax = -1;
+		private int bufferPtr = INIT_BUFSIZE;
+
+		/*
+		 * buffer of characters scanned by the last regular expression
+		 */
+		/*package*/ final ScanBuffer scanned = new ScanBuffer();
 
-		private Input(Nene<A> nene, Reader reader) {
+		/*
+		 * buffer of characters skipped by the last lexer
+		 */
+		/*package*/ final ScanBuffer skipped = new ScanBuffer();
+
+		/*
+		 * number of characters pushed back by backtrack
+		 */
+		/*package*/ long backtracked;
+
+		/*
+		 * starts of lines which are recorded when characters are read from the reader
+		 */
+		/*package*/ LineIndex lines;
+
+		/*package*/ Input(Nene<A> nene, Reader reader) {
 			this.nene = nene;
 			this.reader = reader;
+			this.lines = nene.lineIndex ? new LineIndex() : null;
+		}
+
+		/*
+		 * reads the given reader from the start, keeping the buffer to be reused.
+		 */
+		/*package*/ void reset(Reader reader) {
+			this.reader = reader;
+			bufferPtr = buffer.length;
+			backtracked = 0;
+			lines = nene.lineIndex ? new LineIndex() : null;
 		}
 
 		@Override
 		public int read() throws IOException {
 			int ch;
 
-			if(bufferPtr >= 0) {
-				ch = buffer[bufferPtr++];
-				if(bufferPtr >= bufferMax) {
-					bufferPtr = bufferMax = -1;
-				}
-				return ch;
-			} else {
+			if(bufferPtr < buffer.length) {
+				return buffer[bufferPtr++];
+			} else if(lines == null) {
 				return reader.read();
+			} else if((ch = reader.read()) >= 0) {
+				lines.read(ch);
 			}
+			return ch;
 		}
 
 		@Override
 		public void unread(int ch) {
-			char[] array = new char[1];
-
-			array[0] = (char)ch;
-			backtrack(new String(array));
+			reserve(1, nene.maxBufferSize);
+			buffer[--bufferPtr] = (char)ch;
 		}
 
-		private void backtrack(CharSequence sequence) {
-			if(bufferMax < 0) {
-				bufferMax = bufferPtr = 0;
-			} else {
-				System.arraycopy(buffer, bufferPtr, buffer, 0, bufferMax - bufferPtr);
-				bufferMax -= bufferPtr;
-				bufferPtr = 0;
+		/*
+		 * characters to be read again are kept at the end of the buffer,
+		 * so characters are pushed back without moving the characters already pushed back.
+		 * The buffer grows up to the given limit.
+		 */
+		private void reserve(int length, int limit) {
+			if(bufferPtr < length) {
+				int rest = buffer.length - bufferPtr;
+				int size = Math.max(buffer.length * 2, rest + length);
+				char[] oldBuffer = buffer;
+
+				if(rest + length > limit) {
+					BufferOverflowEvent event = new BufferOverflowEvent();
+
+					if(event.shouldCommit()) {
+						event.requested = rest + length;
+						event.limit = limit;
+						event.commit();
+					}
+					throw new NeneException("buffer overflow");
+				}
+				buffer = new char[Math.min(size, limit)];
+				bufferPtr = buffer.length - rest;
+				System.arraycopy(oldBuffer, oldBuffer.length - rest, buffer, bufferPtr, rest);
+
+				BufferGrowthEvent event = new BufferGrowthEvent();
+				if(event.shouldCommit()) {
+					event.oldSize = oldBuffer.length;
+					event.newSize = buffer.length;
+					event.pending = rest;
+					event.commit();
+				}
 			}
+		}
+
+		/*
+		 * reads characters while they are (or are not) in the given class.
+		 * Characters are read from the reader by blocks and
+		 * characters after the run are kept in the buffer to be read again.
+		 */
+		/*package*/ int span(CharClass charClass, boolean member, ScanBuffer scanned) throws IOException {
+			int count = 0;
 
-			if(sequence.length() - bufferMax < buffer.length) {
-				char[] seqchars;
+			while(true) {
+				int end;
 
-				seqchars = sequence.toString().toCharArray();
-				System.arraycopy(buffer, 0, buffer, seqchars.length, bufferMax);
-				System.arraycopy(seqchars, 0, buffer, 0, seqchars.length);
-				bufferMax += seqchars.length;
-			} else {
-				char[] oldBuffer;
-
-				oldBuffer = buffer;
-				if(buffer.length * 2 <= nene.maxBufferSize) {
-					buffer = new char[buffer.length * 2];
-				} else if(buffer.length < nene.maxBufferSize) {
-					buffer = new char[nene.maxBufferSize];
-				} else {
-					throw new NeneException();
+				if(bufferPtr == buffer.length) {
+					int length = reader.read(buffer, 0, buffer.length);
+
+					if(length <= 0) {
+						return count;
+					}
+					bufferPtr = buffer.length - length;
+					System.arraycopy(buffer, 0, buffer, bufferPtr, length);
+					if(lines != null) {
+						lines.read(buffer, bufferPtr, buffer.length);
+					}
+				}
+
+				end = charClass.span(buffer, bufferPtr, buffer.length, member);
+				if(scanned != null) {
+					scanned.append(buffer, bufferPtr, end);
+				}
+				count += end - bufferPtr;
+				bufferPtr = end;
+				if(end < buffer.length) {
+					return count;
 				}
-				System.arraycopy(oldBuffer, 0, buffer, 0, bufferMax);
-				backtrack(sequence);
+			}
+		}
+
+		/*package*/ void backtrack(ScanBuffer sequence) {
+			backtrack(sequence, nene.maxBufferSize);
+		}
+
+		/*
+		 * pushes back characters skipped by a lexer.
+		 * A run of skipped characters is kept whole in its buffer however long it is,
+		 * so the buffer of input grows beyond the limit of backtracking to keep the run.
+		 */
+		/*package*/ void backtrackSkipped(ScanBuffer sequence) {
+			backtrack(sequence, Integer.MAX_VALUE);
+		}
+
+		private void backtrack(ScanBuffer sequence, int limit) {
+			backtracked += sequence.length();
+			reserve(sequence.length(), limit);
+			bufferPtr -= sequence.length();
+			System.arraycopy(sequence.array(), 0, buffer, bufferPtr, sequence.length());
+		}
+
+		/*package*/ void backtrack(CharSequence sequence) {
+			backtracked += sequence.length();
+			reserve(sequence.length(), nene.maxBufferSize);
+			bufferPtr -= sequence.length();
+			for(int i = 0; i < sequence.length(); i++) {
+				buffer[bufferPtr + i] = sequence.charAt(i);
 			}
 		}
 
@@ -427,79 +836,397 @@ public class Nene<A> {
 	 */
 	public static final class MatchInfo<A> {
 
-		private Input<A> match;
+		/*package*/ final Input<A> match;
+		/*package*/ int index;
+		/*package*/ A attr;
+		/*package*/ long primitive;
+		/*package*/ int depth;
+		/*package*/ final int nestingLimit;
+		/*package*/ Node.Operators.Stack<A> stack;
+		/*package*/ long profiledNanos;
+		/*package*/ EventLog events;
+		/*package*/ Map<CaptureMatcher, Captures> captures;
+
+		/*
+		 * budgets are checked when the countdown of steps runs out,
+		 * so a step costs one decrement unless a budget is checked.
+		 */
+		private static final long CHECK_INTERVAL = 1024;
+		private Thread owner;
+		private final long stepLimit;
+		private final long rereadLimit;
+		private long deadline;
+		private long checkedSteps;
+		private long chunk;
+		private long countdown;
 
 		private MatchInfo(Input<A> match) {
+			Nene<A> nene = match.nene;
+
 			this.match = match;
+			this.nestingLimit = nene.nestingLimit;
+			this.stepLimit = nene.stepLimit;
+			this.rereadLimit = nene.rereadLimit;
+			reset();
 		}
 
-	}
+		/*
+		 * prepares this to start a new match.
+		 * The stack of operators is kept to be reused.
+		 */
+		/*package*/ void reset() {
+			Nene<A> nene = match.nene;
+
+			depth = 0;
+			profiledNanos = 0;
+			owner = Thread.currentThread();
+			deadline = nene.timeLimit >= 0 ? System.nanoTime() + nene.timeLimit * 1000000 : 0;
+			checkedSteps = 0;
+			if(stepLimit < 0 && rereadLimit < 0 && nene.timeLimit < 0 && !nene.interruptible) {
+				chunk = Long.MAX_VALUE;
+			} else {
+				chunk = stepLimit < 0 ? CHECK_INTERVAL : Math.min(CHECK_INTERVAL, stepLimit);
+			}
+			countdown = chunk;
+		}
 
-	@FunctionalInterface
-	private static interface ILetrec<T> {
+		/**
+		 * counts a step of patterns and checks budgets of this match periodically.
+		 *
+		 * @throws BudgetExceededException if a budget is exhausted
+		 */
+		/*package*/ void step() {
+			if(--countdown < 0) {
+				checkBudget();
+			}
+		}
 
-		public T apply(ILetrec<T> f);
+		private void checkBudget() {
+			checkedSteps += chunk + 1;
+			if(stepLimit >= 0 && checkedSteps > stepLimit) {
+				throw new BudgetExceededException(BudgetExceededException.Kind.STEPS);
+			} else if(rereadLimit >= 0 && match.backtracked > rereadLimit) {
+				throw new BudgetExceededException(BudgetExceededException.Kind.REREAD);
+			} else if(deadline != 0 && System.nanoTime() - deadline > 0) {
+				throw new BudgetExceededException(BudgetExceededException.Kind.TIME);
+			} else if(match.nene.interruptible && owner.isInterrupted()) {
+				throw new BudgetExceededException(BudgetExceededException.Kind.INTERRUPTED);
+			}
+			chunk = stepLimit < 0 ? CHECK_INTERVAL : Math.min(CHECK_INTERVAL, stepLimit - checkedSteps);
+			countdown = chunk;
+		}
 
-	}
+		/*
+		 * runs the given rule and records the match to JFR and metrics if they are enabled.
+		 */
+		/*package*/ boolean run(Rule<A> rule) throws IOException {
+			MatchEvent event = new MatchEvent();
+			NeneMetrics metrics = match.nene.metrics;
+			boolean matched = false;
 
-	/**
+			event.begin();
+			try {
+				return matched = rule.match(this);
+			} catch(StackOverflowError e) {
+				// the stack is unwound here, so the thread can go on
+				throw new NeneException("nesting is too deep for the stack of the thread", e);
+			} finally {
+				if(event.shouldCommit()) {
+					event.matched = matched;
+					event.consumed = index;
+					event.backtracked = match.backtracked;
+					event.commit();
+				}
+				if(metrics != null) {
+					metrics.record(matched, index, match.backtracked, match.buffer.length);
+				}
+			}
+		}
+
+		/*package*/ A attr() {
+			return match.nene.getAttribute(this);
+		}
+
+		/**
+		 * gets the index of lines which are read so far.
+		 *
+		 * @return the index of lines or null if it is not enabled
+		 */
+		public LineIndex lines() {
+			return match.lines;
+		}
+
+		/*package*/ void attr(A attr) {
+			match.nene.setAttribute(this, attr);
+		}
+
+	}
+
+	/**
 	 * Builder of fail pattern.
 	 */
-	public final Builder<A> fail = new InnerBuilder((match, index, attr) -> null);
+	public final Builder<A> fail = new InnerBuilder(new Node.Fail<A>());
 
 	/**
 	 * Builder of success pattern.
 	 */
-	public final Builder<A> success =
-			new InnerBuilder((match, index, attr) -> new Result<A>(index, attr));
+	public final Builder<A> success = new InnerBuilder(new Node.Success<A>());
 
 	private final int maxBufferSize = 1024;
 
+	private int nestingLimit = -1;
+	private Profiler profiler;
+	private NeneMetrics metrics;
+	private long stepLimit = -1;
+	private long rereadLimit = -1;
+	private long timeLimit = -1;
+	private boolean interruptible = false;
+	private boolean lineIndex = false;
+	private boolean caseInsensitive = false;
+
 	/**
 	 * creates this instance.
 	 */
 	public Nene() {}
 
-	private static ConditionMatcher compileRegex(String regex) {
-		AbstractBuiltNFA nfa;
+	/*package*/ MatchInfo<A> newMatchInfo(Reader reader) {
+		return new MatchInfo<A>(new Input<A>(this, reader));
+	}
 
-		try {
-			nfa = RegexParser.parse(regex);
-		} catch (RegexParseException e) {
-			throw new NeneException();
+	/*package*/ Builder<A> builder(Node<A> node) {
+		return new InnerBuilder(node);
+	}
+
+	/**
+	 * gets the attribute from the registers of the given state.<br>
+	 * Subclasses which keep the attribute in the primitive register override this method.
+	 *
+	 * @param match state of input
+	 * @return the attribute
+	 */
+	/*package*/ A getAttribute(MatchInfo<A> match) {
+		return match.attr;
+	}
+
+	/**
+	 * sets the attribute to the registers of the given state.
+	 *
+	 * @param match state of input
+	 * @param attr the attribute
+	 */
+	/*package*/ void setAttribute(MatchInfo<A> match, A attr) {
+		match.attr = attr;
+	}
+
+	/**
+	 * sets the maximum depth of nesting of patterns defined by letrec.<br>
+	 * A match which nests deeper throws NeneException.
+	 * Patterns are matched on the stack of the thread calling match,
+	 * so a match which nests deeply needs a thread whose stack is large enough for the limit,
+	 * like a thread created by {@link Thread#Thread(ThreadGroup, Runnable, String, long)}.
+	 * A match which overflows the stack also throws NeneException.
+	 *
+	 * @param nestingLimit maximum depth of nesting or negative if not limited
+	 * @return this instance
+	 */
+	public Nene<A> nestingLimit(int nestingLimit) {
+		this.nestingLimit = nestingLimit;
+		return this;
+	}
+
+	/**
+	 * sets the maximum number of steps of a match.<br>
+	 * A step is a call of a recursive pattern or an executer,
+	 * an iteration of a repetition or a test of a condition.
+	 * A match which exceeds the budget throws {@link BudgetExceededException}.
+	 *
+	 * @param stepLimit maximum number of steps or negative if not limited
+	 * @return this instance
+	 */
+	public Nene<A> stepLimit(long stepLimit) {
+		this.stepLimit = stepLimit;
+		return this;
+	}
+
+	/**
+	 * sets the maximum number of characters which are pushed back to be read again in a match.<br>
+	 * The budget is checked once for some steps, so a match may exceed it slightly before it is stopped.
+	 *
+	 * @param rereadLimit maximum number of characters or negative if not limited
+	 * @return this instance
+	 */
+	public Nene<A> rereadLimit(long rereadLimit) {
+		this.rereadLimit = rereadLimit;
+		return this;
+	}
+
+	/**
+	 * sets the maximum wall-clock time of a match.<br>
+	 * The budget is checked once for some steps.
+	 *
+	 * @param timeLimit maximum time in milliseconds or negative if not limited
+	 * @return this instance
+	 */
+	public Nene<A> timeLimit(long timeLimit) {
+		this.timeLimit = timeLimit;
+		return this;
+	}
+
+	/**
+	 * sets whether a match is stopped when the thread which started the match is interrupted.<br>
+	 * The interrupted status is checked once for some steps and is not cleared.
+	 *
+	 * @param interruptible true if a match can be interrupted
+	 * @return this instance
+	 */
+	public Nene<A> interruptible(boolean interruptible) {
+		this.interruptible = interruptible;
+		return this;
+	}
+
+	/**
+	 * sets whether starts of lines are recorded while the input is read.<br>
+	 * The recorded index is given by {@link Result#lines} and {@link MatchInfo#lines()}.
+	 *
+	 * @param lineIndex true if starts of lines are recorded
+	 * @return this instance
+	 */
+	public Nene<A> lineIndex(boolean lineIndex) {
+		this.lineIndex = lineIndex;
+		return this;
+	}
+
+	/**
+	 * sets whether regular expressions given to builders of this instance match characters ignoring case.<br>
+	 * Case is folded into the automata when they are compiled, so the input is not converted.
+	 * A regular expression can also ignore case by starting with "(?i)".
+	 *
+	 * @param caseInsensitive true if case is ignored
+	 * @return this instance
+	 */
+	public Nene<A> caseInsensitive(boolean caseInsensitive) {
+		this.caseInsensitive = caseInsensitive;
+		return this;
+	}
+
+	/**
+	 * sets the profiler which records statistics of patterns named after this call.<br>
+	 * Patterns named while no profiler is set are not profiled and cost nothing.
+	 *
+	 * @param profiler the profiler or null
+	 * @return this instance
+	 */
+	public Nene<A> profiler(Profiler profiler) {
+		this.profiler = profiler;
+		return this;
+	}
+
+	/**
+	 * sets the counters which are updated once for each match.
+	 *
+	 * @param metrics the counters or null
+	 * @return this instance
+	 */
+	public Nene<A> metrics(NeneMetrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * names the given pattern for the profiler.<br>
+	 * If no profiler is set, the given builder is returned as it is.
+	 *
+	 * @param name name of the pattern
+	 * @param builder the pattern
+	 * @return this builder
+	 */
+	public Builder<A> named(String name, Builder<A> builder) {
+		if(profiler == null) {
+			return builder;
 		}
+		return new InnerBuilder(new Node.Named<A>(profiler.entry(name), builder.node()));
+	}
 
-		return sequence -> {
-			StringBuilder builder = new StringBuilder();
-			Set<Object> states = nfa.transitEpsilon(Collections.singleton(nfa.getStartState()));
+	/**
+	 * names the given pattern for streaming.<br>
+	 * While a match is streamed by {@link #stream(Builder, Reader, ParseListener)},
+	 * the start and the end of the pattern are sent to the listener.
+	 * Otherwise the pattern is matched as it is.
+	 *
+	 * @param name name of the pattern
+	 * @param builder the pattern
+	 * @return this builder
+	 */
+	public Builder<A> event(String name, Builder<A> builder) {
+		return new InnerBuilder(new Node.Event<A>(name, builder.node()));
+	}
 
-			while(states.size() > 0) {
-				int ch = sequence.read();
-				Set<Object> stateNew = new HashSet<Object>();
+	/**
+	 * matches the given regular expression as a token for streaming.<br>
+	 * While a match is streamed by {@link #stream(Builder, Reader, ParseListener)},
+	 * the matched characters are sent to the listener.
+	 * Otherwise the regular expression is matched as it is.
+	 *
+	 * @param name name of the token
+	 * @param regex regular expression to match
+	 * @return this builder
+	 */
+	public Builder<A> token(String name, String regex) {
+		return new InnerBuilder(new Node.Token<A>(name, foldCase(regex)));
+	}
 
-				if(ch < 0) {
-					break;
-				} else {
-					for(Object state : states) {
-						stateNew.addAll(nfa.transit(state, (char)ch));
-					}
-					if(stateNew.size() > 0) {
-						Set<Object> stateAdd = null;
-
-						builder.append((char)ch);
-						states = nfa.transitEpsilon(stateNew);
-						while(stateAdd == null || !stateAdd.equals(states)) {
-							stateAdd = states;
-							states = nfa.transitEpsilon(states);
-						}
-					} else {
-						sequence.unread((char)ch);
-						break;
-					}
+	/*package*/ String foldCase(String regex) {
+		if(caseInsensitive && !regex.startsWith(RegexParser.CASE_INSENSITIVE)) {
+			return RegexParser.CASE_INSENSITIVE + regex;
+		} else {
+			return regex;
+		}
+	}
+
+	/*package*/ static RegexMatcher compileRegex(String regex) {
+		return new RegexMatcher(regex);
+	}
+
+	/**
+	 * compiles regular expressions which are not compiled yet in parallel by the given pool.<br>
+	 * Regular expressions are compiled when they are matched at first,
+	 * so this is not required but moves the cost of compilation before the first matches.
+	 * This is global to the JVM: regular expressions of all instances of Nene which are not compiled yet
+	 * are compiled, not only those of builders of one instance.
+	 * A regular expression which has a syntax error is left not compiled after the others are compiled,
+	 * so the error is thrown again by the next call.
+	 *
+	 * @param pool pool which compiles regular expressions
+	 * @throws NeneException if a regular expression has a syntax error
+	 */
+	public static void warmUp(ForkJoinPool pool) {
+		List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+		ConcurrentLinkedQueue<NeneException> errors = new ConcurrentLinkedQueue<NeneException>();
+
+		for(Compilable matcher : RegexMatcher.pending()) {
+			tasks.add(pool.submit(() -> {
+				try {
+					matcher.compile();
+				} catch(NeneException e) {
+					errors.add(e);
 				}
-			}
-			return new ConditionResult(builder.toString(), nfa.isAccept(states));
-		};
+			}));
+		}
+		for(ForkJoinTask<?> task : tasks) {
+			task.join();
+		}
+		if(!errors.isEmpty()) {
+			throw errors.peek();
+		}
+	}
+
+	/**
+	 * compiles regular expressions of all instances of Nene which are not compiled yet in parallel by the common pool.
+	 *
+	 * @throws NeneException if a regular expression has a syntax error
+	 */
+	public static void warmUp() {
+		warmUp(ForkJoinPool.commonPool());
 	}
 
 	/**
@@ -522,6 +1249,16 @@ public class Nene<A> {
 		return new InnerThenBuilder().then(executer);
 	}
 
+	/**
+	 * builds matcher which matches the given builder.
+	 *
+	 * @param builder builder to match
+	 * @return then clause bulider
+	 */
+	public ThenBuilder<A> then(Builder<A> builder) {
+		return new InnerThenBuilder().then(builder);
+	}
+
 	/**
 	 * builds matcher which matches the builder given by second argument
 	 * if the regular expression given by first argument is matched.
@@ -531,9 +1268,7 @@ public class Nene<A> {
 	 * @return orElse clause builder
 	 */
 	public ConditionBuilder<A> cond(String regex, Builder<A> builder) {
-		ConditionMatcher fa = compileRegex(regex);
-
-		return new InnerConditionBuilder(fa, builder.build());
+		return new InnerConditionBuilder(regex, builder.node());
 	}
 
 	/**
@@ -545,9 +1280,40 @@ public class Nene<A> {
 	 * @return orElse clause builder
 	 */
 	public ConditionBuilder<A> cond(String regex, String match) {
-		ConditionMatcher fa = compileRegex(regex);
+		return new InnerConditionBuilder(regex, then(match).node());
+	}
 
-		return new InnerConditionBuilder(fa, then(match).build());
+	/**
+	 * repeats the given builder and accumulates the synthesized attributes by the given collector.<br>
+	 * Each repetition inherits the attribute inherited by this builder
+	 * and the result of the collector is the synthesized attribute.
+	 * Attributes are accumulated into one mutable container, so no attribute is copied for each repetition.
+	 *
+	 * @param <C> type of container of the collector
+	 * @param minCount minimum count of repetition
+	 * @param maxCount maximum count of repetition and forever if the argument is negative
+	 * @param builder builder to repeat
+	 * @param collector collector of attributes
+	 * @return builder of result
+	 * @throws NeneException if the builder repeated forever may match empty input
+	 */
+	public <C> Builder<A> collect(int minCount,
+			int maxCount,
+			Builder<A> builder,
+			Collector<? super A, C, ? extends A> collector) {
+		return new InnerBuilder(new Node.Collect<A, C>(minCount, maxCount, builder.node(), collector));
+	}
+
+	/**
+	 * repeats the given builder zero or more times and accumulates the synthesized attributes by the given collector.
+	 *
+	 * @param <C> type of container of the collector
+	 * @param builder builder to repeat
+	 * @param collector collector of attributes
+	 * @return builder of result
+	 */
+	public <C> Builder<A> collect(Builder<A> builder, Collector<? super A, C, ? extends A> collector) {
+		return collect(0, -1, builder, collector);
 	}
 
 	/**
@@ -557,22 +1323,10 @@ public class Nene<A> {
 	 * @param maxCount maximum count of repetition and forever if the argument is negative
 	 * @param builder builder to repeat
 	 * @return builder of result
+	 * @throws NeneException if the builder repeated forever may match empty input
 	 */
 	public Builder<A> times(int minCount, int maxCount, Builder<A> builder) {
-		final Executer<A> executer = builder.build();
-		final Executer<A> result = (match, index, attr) -> {
-			Result<A> before = new Result<A>(index, attr);
-			Result<A> after = new Result<A>(index, attr);
-
-			for(int i = 0; maxCount < 0 || i < maxCount; i++, before = after) {
-				if((after = executer.match(match, before.index, before.attr)) == null) {
-					return i >= minCount ? before : null;
-				}
-			}
-			return after;
-		};
-
-		return new InnerBuilder(result);
+		return new InnerBuilder(new Node.Repeat<A>(minCount, maxCount, builder.node()));
 	}
 
 	/**
@@ -699,17 +1453,123 @@ public class Nene<A> {
 	 * @return this builder
 	 */
 	public Builder<A> action(String regex, BiFunction<String, A, A> action) {
-		final ConditionMatcher fa = compileRegex(regex);
+		return new InnerBuilder(new Node.RegexAction<A>(foldCase(regex),
+				(scanned, start, end, attr) -> action.apply(scanned.toString(), attr)));
+	}
 
-		return new InnerBuilder((match, index, attr) -> {
-			ConditionResult matched = fa.run(match.match);
-			if(matched.matched) {
-				return new Result<A>(index + matched.scanned.length(), action.apply(matched.scanned, attr));
-			} else {
-				match.match.backtrack(matched.scanned);
-				return null;
-			}
-		});
+	/**
+	 * executes the given action if the given regular expression is matched.<br>
+	 * The action takes a view of the matched characters instead of a new string.
+	 * The view is valid only while the action is executed,
+	 * so the action must copy it by toString() to keep the characters.
+	 *
+	 * @param regex regular expression to match
+	 * @param action the action
+	 * @return this builder
+	 */
+	public Builder<A> spanAction(String regex, BiFunction<CharSequence, A, A> action) {
+		return new InnerBuilder(new Node.RegexAction<A>(foldCase(regex),
+				(scanned, start, end, attr) -> action.apply(scanned, attr)));
+	}
+
+	/**
+	 * executes the given action if the given regular expression is matched.<br>
+	 * The action takes the first and last indices of the matched characters.
+	 *
+	 * @param regex regular expression to match
+	 * @param action the action
+	 * @return this builder
+	 */
+	public Builder<A> offsetAction(String regex, OffsetAction<A> action) {
+		return new InnerBuilder(new Node.RegexAction<A>(foldCase(regex),
+				(scanned, start, end, attr) -> action.apply(start, end, attr)));
+	}
+
+	/**
+	 * executes the given action if the given regular expression is matched.<br>
+	 * Each pair of parentheses of the regular expression is a group,
+	 * and the action takes the indices and the characters of the groups.
+	 * The groups are captured while the characters are matched, so the characters are not scanned again.
+	 * The captures are valid only while the action is executed.
+	 *
+	 * @param regex regular expression to match
+	 * @param action the action
+	 * @return this builder
+	 */
+	public Builder<A> captureAction(String regex, BiFunction<Captures, A, A> action) {
+		return new InnerBuilder(new Node.CaptureAction<A>(foldCase(regex), action));
+	}
+
+	/**
+	 * skips characters in the given class.<br>
+	 * This matches the same characters as zeroOrMore(charClass) without running a regular expression.
+	 *
+	 * @param charClass character class like "[ \t]"
+	 * @return this builder
+	 */
+	public Builder<A> skip(String charClass) {
+		return new InnerBuilder(new Node.Span<A>(new CharClass(foldCase(charClass)), true, null));
+	}
+
+	/**
+	 * scans characters in the given class and executes the given action.<br>
+	 * The action takes a view of the scanned characters.
+	 *
+	 * @param charClass character class like "[0-9]"
+	 * @param action the action
+	 * @return this builder
+	 */
+	public Builder<A> scanWhile(String charClass, BiFunction<CharSequence, A, A> action) {
+		return new InnerBuilder(new Node.Span<A>(new CharClass(foldCase(charClass)), true, action));
+	}
+
+	/**
+	 * skips characters until a character in the given class or end of input.<br>
+	 * The character in the class is not consumed.
+	 *
+	 * @param charClass character class like "[,\n]"
+	 * @return this builder
+	 */
+	public Builder<A> scanUntil(String charClass) {
+		return new InnerBuilder(new Node.Span<A>(new CharClass(foldCase(charClass)), false, null));
+	}
+
+	/**
+	 * scans characters until a character in the given class or end of input and executes the given action.<br>
+	 * The character in the class is not consumed.
+	 * The action takes a view of the scanned characters.
+	 *
+	 * @param charClass character class like "[,\n]"
+	 * @param action the action
+	 * @return this builder
+	 */
+	public Builder<A> scanUntil(String charClass, BiFunction<CharSequence, A, A> action) {
+		return new InnerBuilder(new Node.Span<A>(new CharClass(foldCase(charClass)), false, action));
+	}
+
+	/**
+	 * skips characters until the given regular expression is matched and consumes the matched characters.<br>
+	 * Characters which cannot start a match are skipped without running the regular expression.
+	 * If no match is found, this fails and the skipped characters are consumed.
+	 *
+	 * @param regex regular expression to find
+	 * @return this builder
+	 */
+	public Builder<A> find(String regex) {
+		return new InnerBuilder(new Node.Find<A>(foldCase(regex), true));
+	}
+
+	/**
+	 * skips characters until the given regular expression is matched.<br>
+	 * The matched characters are not consumed, so the pattern after this matches them,
+	 * like a start of a record after noise.
+	 * If no match is found, this fails and the skipped characters are consumed.
+	 *
+	 * @param regex regular expression to find
+	 * @return this builder
+	 */
+	public Builder<A> skipTo(String regex) {
+		return new InnerBuilder(new Node.Find<A>(foldCase(regex), false));
 	}
 
 	/**
@@ -720,17 +1580,54 @@ public class Nene<A> {
 	 * @return this builder
 	 */
 	public Builder<A> action(Builder<A> builder, BiFunction<A, A, A> action) {
-		final Executer<A> executer = builder.build();
+		return new InnerBuilder(new Node.Action<A>(builder.node(), action));
+	}
+
+	/**
+	 * matches a token of the given type.
+	 *
+	 * @param lexer lexer which scans the token
+	 * @param type type of the token
+	 * @return this builder
+	 */
+	public Builder<A> token(Lexer lexer, int type) {
+		return tokens(lexer).on(type, success);
+	}
 
-		return new InnerBuilder((match, index, attr) -> {
-			Result<A> result = executer.match(match, index, attr);
+	/**
+	 * executes the given action if a token of the given type is matched.<br>
+	 * The action takes a view of the characters of the token.
+	 *
+	 * @param lexer lexer which scans the token
+	 * @param type type of the token
+	 * @param action the action
+	 * @return this builder
+	 */
+	public Builder<A> token(Lexer lexer, int type, BiFunction<CharSequence, A, A> action) {
+		return tokens(lexer).on(type, action, success);
+	}
 
-			if(result == null) {
-				return null;
-			} else {
-				return new Result<A>(index, action.apply(result.attr, attr));
-			}
-		});
+	/**
+	 * builds matcher which dispatches on the type of the next token.<br>
+	 * The token is scanned once whatever the number of branches is.
+	 * Branches are defined by the returned builder.
+	 *
+	 * @param lexer lexer which scans the token
+	 * @return token builder
+	 */
+	public TokenBuilder<A> tokens(Lexer lexer) {
+		return new InnerTokenBuilder(lexer);
+	}
+
+	/**
+	 * builds matcher of expressions which consist of the given operand and operators.<br>
+	 * Operators are defined by the returned builder.
+	 *
+	 * @param operand builder of operand
+	 * @return operator builder
+	 */
+	public OperatorBuilder<A> operators(Builder<A> operand) {
+		return new InnerOperatorBuilder(operand.node());
 	}
 
 	/**
@@ -741,12 +1638,150 @@ public class Nene<A> {
 	 * @return Builder interface
 	 */
 	public Builder<A> letrec(final Function<Executer<A>, Builder<A>> func) {
-		final ILetrec<Executer<A>> f = g -> g.apply(g);
-		final ILetrec<Executer<A>> h =
-				g -> func.apply((match, index, attr) -> g.apply(g).match(match, index, attr)).build();
-		final Executer<A> executer = f.apply(h);
+		Node.Ref<A> ref = new Node.Ref<A>();
+
+		return new InnerBuilder(new Node.Letrec<A>(ref, func.apply(ref).node()));
+	}
 
-		return new InnerBuilder(executer);
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <A> Result<A>[] results(int size) {
+		return new Result[size];
+	}
+
+	/**
+	 * matches the given builder with each of the given inputs on threads of the given executor.<br>
+	 * Each worker reuses the state of input for all inputs which the worker matches.
+	 *
+	 * @param builder builder to match
+	 * @param inputs inputs to match
+	 * @param attr initial attribute of each input
+	 * @param executor executor which runs workers, like an executor of virtual threads
+	 * @param parallelism the number of workers
+	 * @return results in the order of inputs, null if the input is not matched
+	 */
+	public List<Result<A>> matchBatch(Builder<A> builder,
+			List<? extends CharSequence> inputs,
+			A attr,
+			Executor executor,
+			int parallelism) {
+		Result<A>[] results = results(inputs.size());
+		AtomicInteger next = new AtomicInteger();
+		CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.max(1, Math.min(parallelism, inputs.size()))];
+
+		builder.build();
+		for(int i = 0; i < workers.length; i++) {
+			workers[i] = CompletableFuture.runAsync(() -> {
+				CharSequenceReader reader = new CharSequenceReader();
+				MatchInfo<A> match = newMatchInfo(reader);
+				int index;
+
+				while((index = next.getAndIncrement()) < results.length) {
+					match.match.reset(reader.reset(inputs.get(index)));
+					match.reset();
+					try {
+						results[index] = builder.match(match, attr);
+					} catch(IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			}, executor);
+		}
+
+		try {
+			CompletableFuture.allOf(workers).join();
+		} catch(CompletionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			} else if(e.getCause() instanceof Error) {
+				throw (Error)e.getCause();
+			}
+			throw e;
+		}
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * matches the given builder with each of the given inputs on all processors.
+	 *
+	 * @param builder builder to match
+	 * @param inputs inputs to match
+	 * @param attr initial attribute of each input
+	 * @return results in the order of inputs, null if the input is not matched
+	 */
+	public List<Result<A>> matchBatch(Builder<A> builder, List<? extends CharSequence> inputs, A attr) {
+		return matchBatch(builder, inputs, attr, ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * matches the given builder with each of the given inputs on threads of the given executor.
+	 *
+	 * @param builder builder to match
+	 * @param inputs inputs to match
+	 * @param attr initial attribute of each input
+	 * @param executor executor which runs workers
+	 * @param parallelism the number of workers
+	 * @return results in the order of inputs, null if the input is not matched
+	 */
+	public Result<A>[] matchBatch(Builder<A> builder, CharSequence[] inputs, A attr, Executor executor, int parallelism) {
+		return matchBatch(builder, Arrays.asList(inputs), attr, executor, parallelism).toArray(results(inputs.length));
+	}
+
+	/**
+	 * matches the given builder with each of the given inputs on all processors.
+	 *
+	 * @param builder builder to match
+	 * @param inputs inputs to match
+	 * @param attr initial attribute of each input
+	 * @return results in the order of inputs, null if the input is not matched
+	 */
+	public Result<A>[] matchBatch(Builder<A> builder, CharSequence[] inputs, A attr) {
+		return matchBatch(builder, inputs, attr, ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * matches the given builder with the given reader and sends events of the match to the given listener.<br>
+	 * Events of patterns named by {@link #event(String, Builder)} and {@link #token(String, String)}
+	 * are kept in a log until the whole match succeeds,
+	 * and events of a backtracked pattern are removed from the log, so they are never sent.
+	 * No event is sent if the match fails.
+	 * No attribute is given to the match, so patterns which need no attributes
+	 * are matched without creating objects for nodes or events.
+	 * Actions get null as the inherited attribute, so a builder whose actions use attributes
+	 * must be matched by the methods which take an initial attribute.
+	 *
+	 * @param builder builder to match
+	 * @param reader reader to match
+	 * @param listener listener of events
+	 * @return the last index of matching or -1 if the pattern is not matched
+	 * @throws IOException I/O exception
+	 */
+	public int stream(Builder<A> builder, Reader reader, ParseListener listener) throws IOException {
+		MatchInfo<A> match = newMatchInfo(reader);
+
+		match.index = 0;
+		match.events = new EventLog(listener);
+		if(match.run(builder.build())) {
+			match.events.flush();
+			return match.index;
+		} else {
+			return -1;
+		}
+	}
+
+	/**
+	 * matches the given builder with the given string and sends events of the match to the given listener.
+	 *
+	 * @param builder builder to match
+	 * @param string string to match
+	 * @param listener listener of events
+	 * @return the last index of matching or -1 if the pattern is not matched
+	 */
+	public int stream(Builder<A> builder, String string, ParseListener listener) {
+		try {
+			return stream(builder, new StringReader(string), listener);
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 }
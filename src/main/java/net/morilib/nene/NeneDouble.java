@@ -0,0 +1,260 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Parsing library whose attribute is a primitive double.<br>
+ * The attribute is kept in a primitive register while matching,
+ * so actions defined by methods of this class do not box the attribute.
+ * Actions inherited from {@link Nene} are also available and box the attribute.
+ */
+public class NeneDouble extends PrimitiveNene<Double, NeneDouble> {
+
+	/**
+	 * An action which computes the attribute from the matched characters.
+	 */
+	@FunctionalInterface
+	public static interface TextAction {
+
+		/**
+		 * applies this action.
+		 *
+		 * @param text view of the matched characters which is valid only while the action is executed
+		 * @param attr inherited attribute
+		 * @return synthesized attribute
+		 */
+		public double apply(CharSequence text, double attr);
+
+	}
+
+	/**
+	 * Result index and primitive attribute.
+	 */
+	public static final class DoubleResult {
+
+		/**
+		 * Last index of matching.
+		 */
+		public final int index;
+
+		/**
+		 * Result attribute.
+		 */
+		public final double attr;
+
+		/**
+		 * Index of lines of the input or null if it is not enabled.
+		 */
+		public final LineIndex lines;
+
+		private DoubleResult(int index, double attr, LineIndex lines) {
+			this.index = index;
+			this.attr = attr;
+			this.lines = lines;
+		}
+
+	}
+
+	/**
+	 * Builder of operators whose actions take primitive attributes.<br>
+	 * An operator of higher precedence binds tighter.
+	 * Operators of the same kind are tried in the order of definition.
+	 * A regular expression of an operator which matches the empty string is rejected by {@link NeneException}.
+	 */
+	public static abstract class DoubleOperatorBuilder extends Builder<Double> {
+
+		/**
+		 * defines a left associative infix operator.
+		 *
+		 * @param regex regular expression of the operator
+		 * @param precedence precedence of the operator
+		 * @param action action which combines attributes of the left and right operands
+		 * @return this instance
+		 */
+		public abstract DoubleOperatorBuilder infixLeft(String regex, int precedence, DoubleBinaryOperator action);
+
+		/**
+		 * defines a right associative infix operator.
+		 *
+		 * @param regex regular expression of the operator
+		 * @param precedence precedence of the operator
+		 * @param action action which combines attributes of the left and right operands
+		 * @return this instance
+		 */
+		public abstract DoubleOperatorBuilder infixRight(String regex, int precedence, DoubleBinaryOperator action);
+
+		/**
+		 * defines a prefix operator.
+		 *
+		 * @param regex regular expression of the operator
+		 * @param precedence precedence of the operator
+		 * @param action action which applies to attribute of the operand
+		 * @return this instance
+		 */
+		public abstract DoubleOperatorBuilder prefix(String regex, int precedence, DoubleUnaryOperator action);
+
+		/**
+		 * defines a postfix operator.
+		 *
+		 * @param regex regular expression of the operator
+		 * @param precedence precedence of the operator
+		 * @param action action which applies to attribute of the operand
+		 * @return this instance
+		 */
+		public abstract DoubleOperatorBuilder postfix(String regex, int precedence, DoubleUnaryOperator action);
+
+	}
+
+	private final class InnerDoubleOperatorBuilder extends DoubleOperatorBuilder {
+
+		private final PrimitiveOperators operators;
+
+		private InnerDoubleOperatorBuilder(Node<Double> operand) {
+			this.operators = new PrimitiveOperators(operand);
+		}
+
+		@Override
+		public DoubleOperatorBuilder infixLeft(String regex, int precedence, DoubleBinaryOperator action) {
+			operators.infix(regex, precedence, true, wrap(action));
+			modified();
+			return this;
+		}
+
+		@Override
+		public DoubleOperatorBuilder infixRight(String regex, int precedence, DoubleBinaryOperator action) {
+			operators.infix(regex, precedence, false, wrap(action));
+			modified();
+			return this;
+		}
+
+		@Override
+		public DoubleOperatorBuilder prefix(String regex, int precedence, DoubleUnaryOperator action) {
+			operators.prefix(regex, precedence, wrap(action));
+			modified();
+			return this;
+		}
+
+		@Override
+		public DoubleOperatorBuilder postfix(String regex, int precedence, DoubleUnaryOperator action) {
+			operators.postfix(regex, precedence, wrap(action));
+			modified();
+			return this;
+		}
+
+		@Override
+		/*package*/ Node<Double> node() {
+			return operators.node();
+		}
+
+		@Override
+		/*package*/ MatchInfo<Double> newMatchInfo(Reader reader) {
+			return NeneDouble.this.newMatchInfo(reader);
+		}
+
+	}
+
+	/**
+	 * creates this instance.
+	 */
+	public NeneDouble() {}
+
+	private static LongBinaryOperator wrap(DoubleBinaryOperator action) {
+		return (x, y) -> Double.doubleToRawLongBits(
+				action.applyAsDouble(Double.longBitsToDouble(x), Double.longBitsToDouble(y)));
+	}
+
+	private static LongUnaryOperator wrap(DoubleUnaryOperator action) {
+		return x -> Double.doubleToRawLongBits(action.applyAsDouble(Double.longBitsToDouble(x)));
+	}
+
+	@Override
+	/*package*/ long bits(Double attr) {
+		return Double.doubleToRawLongBits(attr);
+	}
+
+	@Override
+	/*package*/ Double attribute(long bits) {
+		return Double.longBitsToDouble(bits);
+	}
+
+	/**
+	 * executes the given action if the given regular expression is matched.
+	 *
+	 * @param regex regular expression to match
+	 * @param action the action
+	 * @return this builder
+	 */
+	public Builder<Double> actionAsDouble(String regex, TextAction action) {
+		return builder(new Node.PrimitiveRegexAction<Double>(foldCase(regex), (text, x) ->
+				Double.doubleToRawLongBits(action.apply(text, Double.longBitsToDouble(x)))));
+	}
+
+	/**
+	 * executes the given action if the given builder is matched.<br>
+	 * The action takes the synthesized attribute and the inherited attribute.
+	 *
+	 * @param builder builder to match
+	 * @param action the action
+	 * @return this builder
+	 */
+	public Builder<Double> actionAsDouble(Builder<Double> builder, DoubleBinaryOperator action) {
+		return builder(new Node.PrimitiveAction<Double>(builder.node(), wrap(action)));
+	}
+
+	/**
+	 * builds matcher of expressions which consist of the given operand and operators.<br>
+	 * Operators are defined by the returned builder.
+	 *
+	 * @param operand builder of operand
+	 * @return operator builder
+	 */
+	public DoubleOperatorBuilder operatorsAsDouble(Builder<Double> operand) {
+		return new InnerDoubleOperatorBuilder(operand.node());
+	}
+
+	/**
+	 * starts matching of the given builder with the given reader and initial attribute.
+	 *
+	 * @param builder builder to match
+	 * @param reader reader to match
+	 * @param attr initial attribute
+	 * @return result of matching or null if pattern is not matched
+	 * @throws IOException I/O exception
+	 */
+	public DoubleResult match(Builder<Double> builder, Reader reader, double attr) throws IOException {
+		MatchInfo<Double> match = matchBits(builder, reader, Double.doubleToRawLongBits(attr));
+
+		return match != null ? new DoubleResult(match.index, Double.longBitsToDouble(match.primitive), match.lines()) : null;
+	}
+
+	/**
+	 * starts matching of the given builder with the given string and initial attribute.
+	 *
+	 * @param builder builder to match
+	 * @param string string to match
+	 * @param attr initial attribute
+	 * @return result of matching or null if pattern is not matched
+	 */
+	public DoubleResult match(Builder<Double> builder, String string, double attr) {
+		try {
+			return match(builder, new StringReader(string), attr);
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
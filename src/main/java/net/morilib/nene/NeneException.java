@@ -29,4 +29,14 @@ public class NeneException extends RuntimeException {
 		super(message);
 	}
 
+	/**
+	 * creates exception.
+	 *
+	 * @param message a message
+	 * @param cause the cause
+	 */
+	public NeneException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
 }
@@ -0,0 +1,248 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Parsing library whose attribute is a primitive long.<br>
+ * The attribute is kept in a primitive register while matching,
+ * so actions defined by methods of this class do not box the attribute.
+ * Actions inherited from {@link Nene} are also available and box the attribute.
+ */
+public class NeneLong extends PrimitiveNene<Long, NeneLong> {
+
+	/**
+	 * An action which computes the attribute from the matched characters.
+	 */
+	@FunctionalInterface
+	public static interface TextAction {
+
+		/**
+		 * applies this action.
+		 *
+		 * @param text view of the matched characters which is valid only while the action is executed
+		 * @param attr inherited attribute
+		 * @return synthesized attribute
+		 */
+		public long apply(CharSequence text, long attr);
+
+	}
+
+	/**
+	 * Result index and primitive attribute.
+	 */
+	public static final class LongResult {
+
+		/**
+		 * Last index of matching.
+		 */
+		public final int index;
+
+		/**
+		 * Result attribute.
+		 */
+		public final long attr;
+
+		/**
+		 * Index of lines of the input or null if it is not enabled.
+		 */
+		public final LineIndex lines;
+
+		private LongResult(int index, long attr, LineIndex lines) {
+			this.index = index;
+			this.attr = attr;
+			this.lines = lines;
+		}
+
+	}
+
+	/**
+	 * Builder of operators whose actions take primitive attributes.<br>
+	 * An operator of higher precedence binds tighter.
+	 * Operators of the same kind are tried in the order of definition.
+	 * A regular expression of an operator which matches the empty string is rejected by {@link NeneException}.
+	 */
+	public static abstract class LongOperatorBuilder extends Builder<Long> {
+
+		/**
+		 * defines a left associative infix operator.
+		 *
+		 * @param regex regular expression of the operator
+		 * @param precedence precedence of the operator
+		 * @param action action which combines attributes of the left and right operands
+		 * @return this instance
+		 */
+		public abstract LongOperatorBuilder infixLeft(String regex, int precedence, LongBinaryOperator action);
+
+		/**
+		 * defines a right associative infix operator.
+		 *
+		 * @param regex regular expression of the operator
+		 * @param precedence precedence of the operator
+		 * @param action action which combines attributes of the left and right operands
+		 * @return this instance
+		 */
+		public abstract LongOperatorBuilder infixRight(String regex, int precedence, LongBinaryOperator action);
+
+		/**
+		 * defines a prefix operator.
+		 *
+		 * @param regex regular expression of the operator
+		 * @param precedence precedence of the operator
+		 * @param action action which applies to attribute of the operand
+		 * @return this instance
+		 */
+		public abstract LongOperatorBuilder prefix(String regex, int precedence, LongUnaryOperator action);
+
+		/**
+		 * defines a postfix operator.
+		 *
+		 * @param regex regular expression of the operator
+		 * @param precedence precedence of the operator
+		 * @param action action which applies to attribute of the operand
+		 * @return this instance
+		 */
+		public abstract LongOperatorBuilder postfix(String regex, int precedence, LongUnaryOperator action);
+
+	}
+
+	private final class InnerLongOperatorBuilder extends LongOperatorBuilder {
+
+		private final PrimitiveOperators operators;
+
+		private InnerLongOperatorBuilder(Node<Long> operand) {
+			this.operators = new PrimitiveOperators(operand);
+		}
+
+		@Override
+		public LongOperatorBuilder infixLeft(String regex, int precedence, LongBinaryOperator action) {
+			operators.infix(regex, precedence, true, action);
+			modified();
+			return this;
+		}
+
+		@Override
+		public LongOperatorBuilder infixRight(String regex, int precedence, LongBinaryOperator action) {
+			operators.infix(regex, precedence, false, action);
+			modified();
+			return this;
+		}
+
+		@Override
+		public LongOperatorBuilder prefix(String regex, int precedence, LongUnaryOperator action) {
+			operators.prefix(regex, precedence, action);
+			modified();
+			return this;
+		}
+
+		@Override
+		public LongOperatorBuilder postfix(String regex, int precedence, LongUnaryOperator action) {
+			operators.postfix(regex, precedence, action);
+			modified();
+			return this;
+		}
+
+		@Override
+		/*package*/ Node<Long> node() {
+			return operators.node();
+		}
+
+		@Override
+		/*package*/ MatchInfo<Long> newMatchInfo(Reader reader) {
+			return NeneLong.this.newMatchInfo(reader);
+		}
+
+	}
+
+	/**
+	 * creates this instance.
+	 */
+	public NeneLong() {}
+
+	@Override
+	/*package*/ long bits(Long attr) {
+		return attr;
+	}
+
+	@Override
+	/*package*/ Long attribute(long bits) {
+		return bits;
+	}
+
+	/**
+	 * executes the given action if the given regular expression is matched.
+	 *
+	 * @param regex regular expression to match
+	 * @param action the action
+	 * @return this builder
+	 */
+	public Builder<Long> actionAsLong(String regex, TextAction action) {
+		return builder(new Node.PrimitiveRegexAction<Long>(foldCase(regex), action::apply));
+	}
+
+	/**
+	 * executes the given action if the given builder is matched.<br>
+	 * The action takes the synthesized attribute and the inherited attribute.
+	 *
+	 * @param builder builder to match
+	 * @param action the action
+	 * @return this builder
+	 */
+	public Builder<Long> actionAsLong(Builder<Long> builder, LongBinaryOperator action) {
+		return builder(new Node.PrimitiveAction<Long>(builder.node(), action));
+	}
+
+	/**
+	 * builds matcher of expressions which consist of the given operand and operators.<br>
+	 * Operators are defined by the returned builder.
+	 *
+	 * @param operand builder of operand
+	 * @return operator builder
+	 */
+	public LongOperatorBuilder operatorsAsLong(Builder<Long> operand) {
+		return new InnerLongOperatorBuilder(operand.node());
+	}
+
+	/**
+	 * starts matching of the given builder with the given reader and initial attribute.
+	 *
+	 * @param builder builder to match
+	 * @param reader reader to match
+	 * @param attr initial attribute
+	 * @return result of matching or null if pattern is not matched
+	 * @throws IOException I/O exception
+	 */
+	public LongResult match(Builder<Long> builder, Reader reader, long attr) throws IOException {
+		MatchInfo<Long> match = matchBits(builder, reader, attr);
+
+		return match != null ? new LongResult(match.index, match.primitive, match.lines()) : null;
+	}
+
+	/**
+	 * starts matching of the given builder with the given string and initial attribute.
+	 *
+	 * @param builder builder to match
+	 * @param string string to match
+	 * @param attr initial attribute
+	 * @return result of matching or null if pattern is not matched
+	 */
+	public LongResult match(Builder<Long> builder, String string, long attr) {
+		try {
+			return match(builder, new StringReader(string), attr);
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters of matches which can be registered as an MBean.<br>
+ * Counters are given to {@link Nene#metrics(NeneMetrics)} and
+ * updated once for each match.
+ */
+public class NeneMetrics implements NeneMetricsMBean {
+
+	private final LongAdder matches = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder consumed = new LongAdder();
+	private final LongAdder reread = new LongAdder();
+	private final AtomicInteger bufferHighWaterMark = new AtomicInteger();
+
+	/**
+	 * creates counters.
+	 */
+	public NeneMetrics() {}
+
+	/*package*/ void record(boolean matched, int consumed, long reread, int bufferSize) {
+		int mark;
+
+		matches.increment();
+		if(matched) {
+			this.consumed.add(consumed);
+		} else {
+			failures.increment();
+		}
+		this.reread.add(reread);
+		while((mark = bufferHighWaterMark.get()) < bufferSize &&
+				!bufferHighWaterMark.compareAndSet(mark, bufferSize));
+	}
+
+	@Override
+	public long getMatches() {
+		return matches.sum();
+	}
+
+	@Override
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	@Override
+	public long getCharactersConsumed() {
+		return consumed.sum();
+	}
+
+	@Override
+	public long getCharactersReread() {
+		return reread.sum();
+	}
+
+	@Override
+	public int getBufferHighWaterMark() {
+		return bufferHighWaterMark.get();
+	}
+
+	@Override
+	public void reset() {
+		matches.reset();
+		failures.reset();
+		consumed.reset();
+		reread.reset();
+		bufferHighWaterMark.set(0);
+	}
+
+	/**
+	 * registers this to the platform MBean server.
+	 *
+	 * @param name name of the MBean like "net.morilib.nene:type=NeneMetrics,name=parser"
+	 * @return this instance
+	 * @throws NeneException if this cannot be registered
+	 */
+	public NeneMetrics register(String name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+			return this;
+		} catch(JMException e) {
+			throw new NeneException(e.getMessage());
+		}
+	}
+
+	/**
+	 * unregisters the MBean of the given name from the platform MBean server.
+	 *
+	 * @param name name of the MBean
+	 * @throws NeneException if the MBean cannot be unregistered
+	 */
+	public static void unregister(String name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(name));
+		} catch(JMException e) {
+			throw new NeneException(e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+/**
+ * The management interface of {@link NeneMetrics}.
+ */
+public interface NeneMetricsMBean {
+
+	/**
+	 * gets the number of matches.
+	 *
+	 * @return the number of matches
+	 */
+	public long getMatches();
+
+	/**
+	 * gets the number of matches which failed.
+	 *
+	 * @return the number of failures
+	 */
+	public long getFailures();
+
+	/**
+	 * gets the number of characters consumed by matches which succeeded.
+	 *
+	 * @return the number of characters
+	 */
+	public long getCharactersConsumed();
+
+	/**
+	 * gets the number of characters pushed back to be read again.
+	 *
+	 * @return the number of characters
+	 */
+	public long getCharactersReread();
+
+	/**
+	 * gets the maximum size of the buffer of pushed back characters.
+	 *
+	 * @return the maximum size
+	 */
+	public int getBufferHighWaterMark();
+
+	/**
+	 * resets all counters.
+	 */
+	public void reset();
+
+}
@@ -0,0 +1,2035 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collector;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import net.morilib.automaton2.AbstractBuiltNFA;
+import net.morilib.automaton2.RegexParseException;
+import net.morilib.automaton2.RegexParser;
+import net.morilib.automaton2.SubsetDFA;
+import net.morilib.nene.Nene.Executer;
+import net.morilib.nene.Nene.MatchInfo;
+import net.morilib.nene.Nene.Result;
+
+/**
+ * Intermediate representation of a grammar built by builders.<br>
+ * A tree of nodes is optimized by {@link #optimize()} and then compiled to a rule.
+ *
+ * @param <A> type of attribute
+ */
+/*package*/ abstract class Node<A> {
+
+	/**
+	 * Characters which have special meanings in regular expressions.
+	 */
+	/*package*/ static final String METACHARACTERS = "|()*+.[";
+
+	/**
+	 * compiles this node to a rule.
+	 *
+	 * @return compiled rule
+	 */
+	/*package*/ abstract Rule<A> compile();
+
+	/**
+	 * optimizes this node and its children.
+	 *
+	 * @return optimized node
+	 */
+	/*package*/ Node<A> optimize() {
+		return this;
+	}
+
+	/**
+	 * collects regular expressions which are matched by this node and its children.
+	 *
+	 * @param result collection to which regular expressions are added
+	 */
+	/*package*/ void regexes(Collection<String> result) {
+		// no regular expression
+	}
+
+	/**
+	 * returns true if this node may succeed without consuming input.<br>
+	 * Executers given by users and recursions are assumed to consume input.
+	 *
+	 * @return true if this node may match empty input
+	 */
+	/*package*/ boolean nullable() {
+		return false;
+	}
+
+	/**
+	 * throws an exception if the body of a repetition forever may succeed without consuming input.
+	 *
+	 * @param maxCount maximum count of the repetition
+	 * @param body body of the repetition
+	 */
+	/*package*/ static void checkProgress(int maxCount, Node<?> body) {
+		if(maxCount < 0 && body.nullable()) {
+			throw new NeneException("repetition of empty pattern: " + body);
+		}
+	}
+
+	/**
+	 * gets the regular expression which this node matches at first.
+	 *
+	 * @return the regular expression or null if it is not known
+	 */
+	/*package*/ String leadingRegex() {
+		return null;
+	}
+
+	/**
+	 * returns true if the given regular expression is a literal string.<br>
+	 * A literal matches exactly one string, so no string of the language is a prefix of another.
+	 *
+	 * @param regex regular expression to test
+	 * @return true if the regular expression is a literal string
+	 */
+	/*package*/ static boolean isLiteral(String regex) {
+		return regex.length() > 0 && literalLength(regex) == regex.length();
+	}
+
+	/**
+	 * gets the length of the literal characters at the start of the given regular expression.
+	 *
+	 * @param regex regular expression
+	 * @return the number of characters before the first metacharacter
+	 */
+	/*package*/ static int literalLength(String regex) {
+		int end = 0;
+
+		while(end < regex.length() && METACHARACTERS.indexOf(regex.charAt(end)) < 0) {
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * creates an array of rules.
+	 *
+	 * @param size size of the array
+	 * @return the array
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	/*package*/ static <A> Rule<A>[] rules(int size) {
+		return new Rule[size];
+	}
+
+	private static <A> List<Node<A>> optimizeAll(List<Node<A>> nodes) {
+		List<Node<A>> result = new ArrayList<Node<A>>();
+
+		for(Node<A> node : nodes) {
+			result.add(node.optimize());
+		}
+		return result;
+	}
+
+	/**
+	 * A node which always succeeds without consuming input.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Success<A> extends Node<A> {
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			return match -> true;
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return "success";
+		}
+
+	}
+
+	/**
+	 * A node which always fails.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Fail<A> extends Node<A> {
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			return match -> false;
+		}
+
+		@Override
+		public String toString() {
+			return "fail";
+		}
+
+	}
+
+	/**
+	 * A node which matches a regular expression.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Regex<A> extends Node<A> {
+
+		/*package*/ final String regex;
+		private final RegexMatcher fa;
+
+		/*package*/ Regex(String regex) {
+			this.regex = regex;
+			this.fa = Nene.compileRegex(regex);
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final RegexMatcher fa = this.fa;
+
+			return match -> {
+				boolean matched = fa.scan(match.match, match.match.scanned);
+
+				if(matched) {
+					match.index += match.match.scanned.length();
+					return true;
+				} else {
+					match.match.backtrack(match.match.scanned);
+					return false;
+				}
+			};
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			result.add(regex);
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return regex;
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return fa.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return "regex(" + regex + ")";
+		}
+
+	}
+
+	/**
+	 * An action which is applied to the scanned characters.
+	 *
+	 * @param <A> type of attribute
+	 */
+	@FunctionalInterface
+	/*package*/ static interface ScanAction<A> {
+
+		/**
+		 * applies this action.
+		 *
+		 * @param scanned scanned characters which are valid only while this action is applied
+		 * @param start first index of the scanned characters
+		 * @param end last index of the scanned characters
+		 * @param attr inherited attribute
+		 * @return synthesized attribute
+		 */
+		public A apply(ScanBuffer scanned, int start, int end, A attr);
+
+	}
+
+	/**
+	 * A node which matches a regular expression and applies an action to the scanned characters.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class RegexAction<A> extends Node<A> {
+
+		/*package*/ final String regex;
+		private final RegexMatcher fa;
+		private final ScanAction<A> action;
+
+		/*package*/ RegexAction(String regex, ScanAction<A> action) {
+			this.regex = regex;
+			this.fa = Nene.compileRegex(regex);
+			this.action = action;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final RegexMatcher fa = this.fa;
+			final ScanAction<A> action = this.action;
+
+			return match -> {
+				int start = match.index;
+				boolean matched = fa.scan(match.match, match.match.scanned);
+
+				if(matched) {
+					match.index += match.match.scanned.length();
+					match.attr(action.apply(match.match.scanned, start, match.index, match.attr()));
+					return true;
+				} else {
+					match.match.backtrack(match.match.scanned);
+					return false;
+				}
+			};
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			result.add(regex);
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return regex;
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return fa.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return "action(" + regex + ")";
+		}
+
+	}
+
+	/**
+	 * A node which matches a regular expression and applies an action to the captured groups.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class CaptureAction<A> extends Node<A> {
+
+		/*package*/ final String regex;
+		private final CaptureMatcher fa;
+		private final BiFunction<Captures, A, A> action;
+
+		/*package*/ CaptureAction(String regex, BiFunction<Captures, A, A> action) {
+			this.regex = regex;
+			this.fa = new CaptureMatcher(regex);
+			this.action = action;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final CaptureMatcher fa = this.fa;
+			final BiFunction<Captures, A, A> action = this.action;
+
+			return match -> {
+				Captures captures = fa.captures(match);
+
+				if(fa.scan(match.match, captures, match.index)) {
+					match.index += match.match.scanned.length();
+					match.attr(action.apply(captures, match.attr()));
+					return true;
+				} else {
+					match.match.backtrack(match.match.scanned);
+					return false;
+				}
+			};
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			result.add(regex);
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return regex;
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return fa.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return "captures(" + regex + ")";
+		}
+
+	}
+
+	/**
+	 * A node which scans a run of characters in (or not in) a character class.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Span<A> extends Node<A> {
+
+		/*package*/ final CharClass charClass;
+		/*package*/ final boolean member;
+		private final BiFunction<CharSequence, A, A> action;
+
+		/*package*/ Span(CharClass charClass, boolean member, BiFunction<CharSequence, A, A> action) {
+			this.charClass = charClass;
+			this.member = member;
+			this.action = action;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final CharClass charClass = this.charClass;
+			final boolean member = this.member;
+			final BiFunction<CharSequence, A, A> action = this.action;
+
+			if(action == null) {
+				return match -> {
+					match.index += match.match.span(charClass, member, null);
+					return true;
+				};
+			} else {
+				return match -> {
+					match.match.scanned.clear();
+					match.index += match.match.span(charClass, member, match.match.scanned);
+					match.attr(action.apply(match.match.scanned, match.attr()));
+					return true;
+				};
+			}
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return (member ? "skip(" : "until(") + charClass + ")";
+		}
+
+	}
+
+	/**
+	 * A node which skips characters until a regular expression is matched.<br>
+	 * Characters which cannot start a match are skipped by blocks
+	 * and the automaton runs only at the other positions.
+	 * Characters are read ahead by the automaton which can start anywhere to find the end of the first match,
+	 * so this fails in one pass if no match is left.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Find<A> extends Node<A> {
+
+		/*
+		 * characters read ahead to find the end of the first match,
+		 * which are fewer than characters which can be pushed back
+		 */
+		private static final int WINDOW = 512;
+
+		/*package*/ final String regex;
+		/*package*/ final boolean consume;
+		private final RegexMatcher fa;
+
+		/*package*/ Find(String regex, boolean consume) {
+			this.regex = regex;
+			this.consume = consume;
+			this.fa = Nene.compileRegex(regex);
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final RegexMatcher fa = this.fa;
+			final Prefilter prefilter = Prefilter.of(regex, fa);
+			final CharClass first = prefilter != null ? prefilter.first() : null;
+			final boolean consume = this.consume;
+
+			return match -> {
+				int limit = -1;
+
+				while(true) {
+					if(first != null) {
+						match.index += match.match.span(first, false, null);
+					}
+
+					if(prefilter != null && match.index > limit) {
+						int end = prefilter.end(match.match, match.match.scanned, WINDOW);
+
+						if(end < 0 && match.match.scanned.length() < WINDOW) {
+							match.index += match.match.scanned.length();
+							return false;
+						}
+						limit = match.index + (end < 0 ? match.match.scanned.length() - 1 : end);
+						match.match.backtrack(match.match.scanned);
+					}
+
+					match.step();
+					if(fa.scan(match.match, match.match.scanned)) {
+						if(consume) {
+							match.index += match.match.scanned.length();
+						} else {
+							match.match.backtrack(match.match.scanned);
+						}
+						return true;
+					}
+
+					match.match.backtrack(match.match.scanned);
+					if(match.match.read() < 0) {
+						return false;
+					}
+					match.index++;
+				}
+			};
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			result.add(regex);
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return !consume || fa.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return (consume ? "find(" : "skipTo(") + regex + ")";
+		}
+
+	}
+
+	/**
+	 * A node which applies an action to the attribute synthesized by its body.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Action<A> extends Node<A> {
+
+		/*package*/ final Node<A> body;
+		private final BiFunction<A, A, A> action;
+
+		/*package*/ Action(Node<A> body, BiFunction<A, A, A> action) {
+			this.body = body;
+			this.action = action;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final Rule<A> rule = body.compile();
+			final BiFunction<A, A, A> action = this.action;
+
+			return match -> {
+				A attr = match.attr();
+
+				if(rule.match(match)) {
+					match.attr(action.apply(match.attr(), attr));
+					return true;
+				} else {
+					return false;
+				}
+			};
+		}
+
+		@Override
+		/*package*/ Node<A> optimize() {
+			return new Action<A>(body.optimize(), action);
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			body.regexes(result);
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return body.leadingRegex();
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return body.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return "action(" + body + ")";
+		}
+
+	}
+
+	/**
+	 * An action which computes a primitive attribute from the matched characters.
+	 */
+	@FunctionalInterface
+	/*package*/ static interface PrimitiveTextAction {
+
+		/**
+		 * applies this action.
+		 *
+		 * @param text view of the matched characters
+		 * @param bits inherited attribute
+		 * @return synthesized attribute
+		 */
+		public long apply(CharSequence text, long bits);
+
+	}
+
+	/**
+	 * A node which matches a regular expression and applies an action to
+	 * the matched string and the primitive attribute.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class PrimitiveRegexAction<A> extends Node<A> {
+
+		/*package*/ final String regex;
+		private final RegexMatcher fa;
+		private final PrimitiveTextAction action;
+
+		/*package*/ PrimitiveRegexAction(String regex, PrimitiveTextAction action) {
+			this.regex = regex;
+			this.fa = Nene.compileRegex(regex);
+			this.action = action;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final RegexMatcher fa = this.fa;
+			final PrimitiveTextAction action = this.action;
+
+			return match -> {
+				boolean matched = fa.scan(match.match, match.match.scanned);
+
+				if(matched) {
+					match.index += match.match.scanned.length();
+					match.primitive = action.apply(match.match.scanned, match.primitive);
+					return true;
+				} else {
+					match.match.backtrack(match.match.scanned);
+					return false;
+				}
+			};
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			result.add(regex);
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return regex;
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return fa.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return "action(" + regex + ")";
+		}
+
+	}
+
+	/**
+	 * A node which applies an action to the primitive attribute synthesized by its body.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class PrimitiveAction<A> extends Node<A> {
+
+		/*package*/ final Node<A> body;
+		private final LongBinaryOperator action;
+
+		/*package*/ PrimitiveAction(Node<A> body, LongBinaryOperator action) {
+			this.body = body;
+			this.action = action;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final Rule<A> rule = body.compile();
+			final LongBinaryOperator action = this.action;
+
+			return match -> {
+				long bits = match.primitive;
+
+				if(rule.match(match)) {
+					match.primitive = action.applyAsLong(match.primitive, bits);
+					return true;
+				} else {
+					return false;
+				}
+			};
+		}
+
+		@Override
+		/*package*/ Node<A> optimize() {
+			return new PrimitiveAction<A>(body.optimize(), action);
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			body.regexes(result);
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return body.leadingRegex();
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return body.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return "action(" + body + ")";
+		}
+
+	}
+
+	/**
+	 * A node which matches its children in order.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Seq<A> extends Node<A> {
+
+		/*package*/ final List<Node<A>> nodes;
+
+		/*package*/ Seq(List<Node<A>> nodes) {
+			this.nodes = Collections.unmodifiableList(new ArrayList<Node<A>>(nodes));
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final Rule<A>[] rules = rules(nodes.size());
+
+			for(int i = 0; i < rules.length; i++) {
+				rules[i] = nodes.get(i).compile();
+			}
+			return match -> {
+				for(Rule<A> rule : rules) {
+					if(!rule.match(match)) {
+						return false;
+					}
+				}
+				return true;
+			};
+		}
+
+		/*
+		 * returns true if the given literal matches the same string whether case is ignored or not.
+		 */
+		private static boolean caseless(String literal) {
+			for(int i = 0; i < literal.length(); i++) {
+				char ch = literal.charAt(i);
+
+				if(Character.toUpperCase(ch) != ch || Character.toLowerCase(ch) != ch) {
+					return false;
+				}
+			}
+			return isLiteral(literal);
+		}
+
+		/*
+		 * merges a literal with the regular expression following it or returns null if they can not be merged.
+		 * Case is ignored by the flag at the start of the whole expression,
+		 * so the flag is kept if both ignore case or the one which does not ignore case has no letters.
+		 */
+		private static String merge(String before, String regex) {
+			boolean foldBefore = before.startsWith(RegexParser.CASE_INSENSITIVE);
+			boolean foldRegex = regex.startsWith(RegexParser.CASE_INSENSITIVE);
+			String literal = foldBefore ? before.substring(RegexParser.CASE_INSENSITIVE.length()) : before;
+			String body = foldRegex ? regex.substring(RegexParser.CASE_INSENSITIVE.length()) : regex;
+
+			if(!isLiteral(literal)) {
+				return null;
+			} else if(foldBefore != foldRegex && !caseless(foldBefore ? body : literal)) {
+				return null;
+			}
+			return (foldBefore || foldRegex ? RegexParser.CASE_INSENSITIVE : "") +
+					(isLiteral(body) ? literal + body : literal + "(" + body + ")");
+		}
+
+		/*
+		 * flattens nested sequences, drops steps after a failure
+		 * and merges a literal with the regular expression following it if they ignore case in the same way.
+		 */
+		@Override
+		/*package*/ Node<A> optimize() {
+			List<Node<A>> flat = new ArrayList<Node<A>>();
+			List<Node<A>> result = new ArrayList<Node<A>>();
+
+			for(Node<A> node : optimizeAll(nodes)) {
+				if(node instanceof Seq) {
+					flat.addAll(((Seq<A>)node).nodes);
+				} else if(!(node instanceof Success)) {
+					flat.add(node);
+				}
+			}
+
+			for(Node<A> node : flat) {
+				Node<A> before = result.isEmpty() ? null : result.get(result.size() - 1);
+				String merged;
+
+				if(before instanceof Fail) {
+					break;
+				} else if(before instanceof Regex && node instanceof Regex &&
+						(merged = merge(((Regex<A>)before).regex, ((Regex<A>)node).regex)) != null) {
+					result.set(result.size() - 1, new Regex<A>(merged));
+				} else {
+					result.add(node);
+				}
+			}
+
+			if(result.isEmpty()) {
+				return new Success<A>();
+			} else if(result.size() == 1) {
+				return result.get(0);
+			} else {
+				return new Seq<A>(result);
+			}
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			for(Node<A> node : nodes) {
+				node.regexes(result);
+			}
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return nodes.get(0).leadingRegex();
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			for(Node<A> node : nodes) {
+				if(!node.nullable()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder("seq(");
+			String delimiter = "";
+
+			for(Node<A> node : nodes) {
+				builder.append(delimiter).append(node);
+				delimiter = ", ";
+			}
+			return builder.append(")").toString();
+		}
+
+	}
+
+	/**
+	 * A node which matches the body of the first branch whose guard is matched.<br>
+	 * An adaptive choice tries the guard which is matched most often first.
+	 * A guard is moved before a declared earlier guard only if no input is matched by both guards,
+	 * so the result is the same as trying guards in the declared order.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Choice<A> extends Node<A> {
+
+		/*
+		 * the order of guards which is rebuilt from counts of hits once for some hits.
+		 * Counts are added by threads which share the choice without locks.
+		 */
+		private static final class Dispatch {
+
+			private static final int INTERVAL = 1024;
+
+			private final boolean[][] overlaps;
+			private final LongAdder[] hits;
+			private final AtomicInteger count = new AtomicInteger();
+			private volatile int[] order;
+
+			private Dispatch(boolean[][] overlaps) {
+				this.overlaps = overlaps;
+				this.hits = new LongAdder[overlaps.length];
+				this.order = new int[overlaps.length];
+				for(int i = 0; i < order.length; i++) {
+					hits[i] = new LongAdder();
+					order[i] = i;
+				}
+			}
+
+			private void hit(int guard) {
+				hits[guard].increment();
+				if(count.incrementAndGet() % INTERVAL == 0) {
+					reorder();
+				}
+			}
+
+			private boolean ready(int guard, boolean[] placed) {
+				for(int i = 0; i < guard; i++) {
+					if(overlaps[i][guard] && !placed[i]) {
+						return false;
+					}
+				}
+				return true;
+			}
+
+			private synchronized void reorder() {
+				int[] result = new int[hits.length];
+				boolean[] placed = new boolean[hits.length];
+				long[] counts = new long[hits.length];
+
+				for(int i = 0; i < hits.length; i++) {
+					counts[i] = hits[i].sum();
+				}
+
+				for(int k = 0; k < result.length; k++) {
+					int best = -1;
+
+					for(int i = 0; i < counts.length; i++) {
+						if(!placed[i] && ready(i, placed) && (best < 0 || counts[i] > counts[best])) {
+							best = i;
+						}
+					}
+					placed[best] = true;
+					result[k] = best;
+				}
+
+				// halves the counts to follow changes of the input
+				for(int i = 0; i < hits.length; i++) {
+					hits[i].add(-counts[i] / 2);
+				}
+				order = result;
+			}
+
+		}
+
+		/*package*/ final List<Regex<A>> guards;
+		/*package*/ final List<Node<A>> branches;
+		/*package*/ final Node<A> orElse;
+		/*package*/ final boolean adaptive;
+
+		/*package*/ Choice(List<Regex<A>> guards, List<Node<A>> branches, Node<A> orElse, boolean adaptive) {
+			this.guards = Collections.unmodifiableList(new ArrayList<Regex<A>>(guards));
+			this.branches = Collections.unmodifiableList(new ArrayList<Node<A>>(branches));
+			this.orElse = orElse;
+			this.adaptive = adaptive;
+		}
+
+		/*
+		 * tests which pairs of guards can be matched by the same input.
+		 */
+		private boolean[][] overlaps() {
+			List<Predicate<Character>> charsets = new ArrayList<Predicate<Character>>();
+			List<AbstractBuiltNFA> nfas = new ArrayList<AbstractBuiltNFA>();
+			boolean[][] result = new boolean[guards.size()][guards.size()];
+			List<Character> alphabet;
+
+			for(Regex<A> guard : guards) {
+				try {
+					nfas.add(RegexParser.parse(guard.regex, charsets));
+				} catch(RegexParseException e) {
+					throw new NeneException("invalid regular expression: " + guard.regex, e);
+				}
+			}
+
+			alphabet = SubsetDFA.alphabet(charsets);
+			for(int i = 0; i < nfas.size(); i++) {
+				for(int j = i + 1; j < nfas.size(); j++) {
+					SubsetDFA dfa = new SubsetDFA(Arrays.asList(nfas.get(i), nfas.get(j)));
+
+					result[i][j] = result[j][i] = dfa.prefixesIntersect(0, 1, alphabet);
+				}
+			}
+			return result;
+		}
+
+		private Rule<A> compileAdaptive() {
+			final RegexMatcher[] fas = new RegexMatcher[guards.size()];
+			final Rule<A>[] rules = rules(guards.size());
+			final Rule<A> orElse = this.orElse.compile();
+			final Dispatch dispatch = new Dispatch(overlaps());
+
+			for(int i = 0; i < fas.length; i++) {
+				fas[i] = guards.get(i).fa;
+				rules[i] = branches.get(i).compile();
+			}
+			return match -> {
+				for(int guard : dispatch.order) {
+					boolean matched;
+
+					match.step();
+					matched = fas[guard].scan(match.match, match.match.scanned);
+					match.match.backtrack(match.match.scanned);
+					if(matched) {
+						dispatch.hit(guard);
+						return rules[guard].match(match);
+					}
+				}
+				return orElse.match(match);
+			};
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			Rule<A> rule;
+
+			if(adaptive && guards.size() > 1) {
+				return compileAdaptive();
+			}
+
+			rule = orElse.compile();
+
+			for(int i = guards.size() - 1; i >= 0; i--) {
+				final RegexMatcher fa = guards.get(i).fa;
+				final Rule<A> ifTrue = branches.get(i).compile();
+				final Rule<A> ifFalse = rule;
+
+				rule = match -> {
+					boolean matched;
+
+					match.step();
+					matched = fa.scan(match.match, match.match.scanned);
+					match.match.backtrack(match.match.scanned);
+					if(matched) {
+						return ifTrue.match(match);
+					} else {
+						return ifFalse.match(match);
+					}
+				};
+			}
+			return rule;
+		}
+
+		/*
+		 * removes branches which can never be reached because an earlier branch has the same guard.
+		 */
+		@Override
+		/*package*/ Node<A> optimize() {
+			List<String> regexes = new ArrayList<String>();
+			List<Regex<A>> guardsNew = new ArrayList<Regex<A>>();
+			List<Node<A>> branchesNew = new ArrayList<Node<A>>();
+
+			for(int i = 0; i < guards.size(); i++) {
+				if(!regexes.contains(guards.get(i).regex)) {
+					regexes.add(guards.get(i).regex);
+					guardsNew.add(guards.get(i));
+					branchesNew.add(branches.get(i).optimize());
+				}
+			}
+			return new Choice<A>(guardsNew, branchesNew, orElse.optimize(), adaptive);
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			for(int i = 0; i < guards.size(); i++) {
+				guards.get(i).regexes(result);
+				branches.get(i).regexes(result);
+			}
+			orElse.regexes(result);
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			for(Node<A> branch : branches) {
+				if(branch.nullable()) {
+					return true;
+				}
+			}
+			return orElse.nullable();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder(adaptive ? "adaptive(" : "choice(");
+
+			for(int i = 0; i < guards.size(); i++) {
+				builder.append(guards.get(i).regex).append(" -> ").append(branches.get(i)).append(", ");
+			}
+			return builder.append("else -> ").append(orElse).append(")").toString();
+		}
+
+	}
+
+	/**
+	 * A node which scans a token by a lexer and dispatches on the type of the token.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class TokenSwitch<A> extends Node<A> {
+
+		/*package*/ final Lexer lexer;
+		/*package*/ final List<Integer> types;
+		/*package*/ final List<BiFunction<CharSequence, A, A>> actions;
+		/*package*/ final List<Node<A>> branches;
+		/*package*/ final Node<A> orElse;
+
+		/*package*/ TokenSwitch(Lexer lexer,
+				List<Integer> types,
+				List<BiFunction<CharSequence, A, A>> actions,
+				List<Node<A>> branches,
+				Node<A> orElse) {
+			this.lexer = lexer;
+			this.types = Collections.unmodifiableList(new ArrayList<Integer>(types));
+			this.actions = Collections.unmodifiableList(new ArrayList<BiFunction<CharSequence, A, A>>(actions));
+			this.branches = Collections.unmodifiableList(new ArrayList<Node<A>>(branches));
+			this.orElse = orElse;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private static <A> BiFunction<CharSequence, A, A>[] actions(int size) {
+			return new BiFunction[size];
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final Lexer lexer = this.lexer;
+			final Rule<A> orElse = this.orElse.compile();
+			final Rule<A>[] rules;
+			final BiFunction<CharSequence, A, A>[] actions;
+			int size = 0;
+
+			for(int type : types) {
+				size = Math.max(size, type + 1);
+			}
+
+			rules = rules(size);
+			actions = actions(size);
+			for(int i = 0; i < types.size(); i++) {
+				if(types.get(i) >= 0 && rules[types.get(i)] == null) {
+					rules[types.get(i)] = branches.get(i).compile();
+					actions[types.get(i)] = this.actions.get(i);
+				}
+			}
+
+			return match -> {
+				int type;
+				Rule<A> rule;
+
+				match.step();
+				type = lexer.scan(match.match, match.match.skipped, match.match.scanned);
+				rule = type >= 0 && type < rules.length ? rules[type] : null;
+
+				if(rule == null) {
+					match.match.backtrack(match.match.scanned);
+					match.match.backtrackSkipped(match.match.skipped);
+					return orElse.match(match);
+				}
+
+				match.index += match.match.skipped.length() + match.match.scanned.length();
+				if(actions[type] != null) {
+					match.attr(actions[type].apply(match.match.scanned, match.attr()));
+				}
+				return rule.match(match);
+			};
+		}
+
+		@Override
+		/*package*/ Node<A> optimize() {
+			return new TokenSwitch<A>(lexer, types, actions, optimizeAll(branches), orElse.optimize());
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			for(Node<A> branch : branches) {
+				branch.regexes(result);
+			}
+			orElse.regexes(result);
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return orElse.nullable();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder("tokens(");
+
+			for(int i = 0; i < types.size(); i++) {
+				builder.append(types.get(i)).append(" -> ").append(branches.get(i)).append(", ");
+			}
+			return builder.append("else -> ").append(orElse).append(")").toString();
+		}
+
+	}
+
+	/**
+	 * A node which repeats its body.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Repeat<A> extends Node<A> {
+
+		/*package*/ final int minCount;
+		/*package*/ final int maxCount;
+		/*package*/ final Node<A> body;
+
+		/*package*/ Repeat(int minCount, int maxCount, Node<A> body) {
+			checkProgress(maxCount, body);
+			this.minCount = minCount;
+			this.maxCount = maxCount;
+			this.body = body;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final Rule<A> rule = body.compile();
+
+			return match -> {
+				EventLog events = match.events;
+
+				for(int i = 0; maxCount < 0 || i < maxCount; i++) {
+					int index = match.index;
+					A attr = match.attr;
+					long bits = match.primitive;
+					int mark = events != null ? events.mark() : 0;
+
+					match.step();
+					if(!rule.match(match)) {
+						match.index = index;
+						match.attr = attr;
+						match.primitive = bits;
+						if(events != null) {
+							events.truncate(mark);
+						}
+						return i >= minCount;
+					}
+					if(maxCount < 0 && match.index == index && i + 1 >= minCount) {
+						// the next repetitions would match empty input forever
+						return true;
+					}
+				}
+				return true;
+			};
+		}
+
+		/*
+		 * removes repetitions which never run their body
+		 * and turns a repetition of a regular expression into a loop of the automaton.
+		 */
+		@Override
+		/*package*/ Node<A> optimize() {
+			Node<A> optimized = body.optimize();
+
+			if(maxCount == 0) {
+				return new Success<A>();
+			} else if(optimized instanceof Fail) {
+				return minCount > 0 ? optimized : new Success<A>();
+			} else if(optimized instanceof Regex) {
+				return new RegexRepeat<A>(minCount, maxCount, (Regex<A>)optimized);
+			} else {
+				return new Repeat<A>(minCount, maxCount, optimized);
+			}
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			body.regexes(result);
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return minCount > 0 ? body.leadingRegex() : null;
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return minCount == 0 || body.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return "repeat(" + minCount + ", " + maxCount + ", " + body + ")";
+		}
+
+	}
+
+	/**
+	 * A node which repeats its body and accumulates attributes synthesized by the body by a collector.<br>
+	 * Each repetition inherits the attribute inherited by this node.
+	 * An attribute is accumulated after its repetition succeeds and the container belongs to one match of this node,
+	 * so the container is dropped when this node or an enclosing pattern fails.
+	 *
+	 * @param <A> type of attribute
+	 * @param <C> type of container
+	 */
+	/*package*/ static final class Collect<A, C> extends Node<A> {
+
+		/*package*/ final int minCount;
+		/*package*/ final int maxCount;
+		/*package*/ final Node<A> body;
+		private final Collector<? super A, C, ? extends A> collector;
+
+		/*package*/ Collect(int minCount, int maxCount, Node<A> body, Collector<? super A, C, ? extends A> collector) {
+			checkProgress(maxCount, body);
+			this.minCount = minCount;
+			this.maxCount = maxCount;
+			this.body = body;
+			this.collector = collector;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final Rule<A> rule = body.compile();
+			final Supplier<C> supplier = collector.supplier();
+			final BiConsumer<C, ? super A> accumulator = collector.accumulator();
+			final Function<C, ? extends A> finisher = collector.finisher();
+
+			return match -> {
+				A attr = match.attr();
+				C container = supplier.get();
+				EventLog events = match.events;
+				int i;
+
+				for(i = 0; maxCount < 0 || i < maxCount; i++) {
+					int index = match.index;
+					int mark = events != null ? events.mark() : 0;
+
+					match.step();
+					match.attr(attr);
+					if(!rule.match(match)) {
+						match.index = index;
+						if(events != null) {
+							events.truncate(mark);
+						}
+						break;
+					}
+					accumulator.accept(container, match.attr());
+					if(maxCount < 0 && match.index == index && i + 1 >= minCount) {
+						// the next repetitions would match empty input forever
+						match.attr(finisher.apply(container));
+						return true;
+					}
+				}
+
+				if(i < minCount) {
+					match.attr(attr);
+					return false;
+				}
+				match.attr(finisher.apply(container));
+				return true;
+			};
+		}
+
+		@Override
+		/*package*/ Node<A> optimize() {
+			return new Collect<A, C>(minCount, maxCount, body.optimize(), collector);
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			body.regexes(result);
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return minCount > 0 ? body.leadingRegex() : null;
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return minCount == 0 || body.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return "collect(" + minCount + ", " + maxCount + ", " + body + ")";
+		}
+
+	}
+
+	/**
+	 * A node which repeats a regular expression in a single loop.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class RegexRepeat<A> extends Node<A> {
+
+		/*package*/ final int minCount;
+		/*package*/ final int maxCount;
+		/*package*/ final Regex<A> body;
+
+		/*package*/ RegexRepeat(int minCount, int maxCount, Regex<A> body) {
+			checkProgress(maxCount, body);
+			this.minCount = minCount;
+			this.maxCount = maxCount;
+			this.body = body;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final RegexMatcher fa = body.fa;
+
+			return match -> {
+				int i;
+
+				for(i = 0; maxCount < 0 || i < maxCount; i++) {
+					boolean matched;
+
+					match.step();
+					matched = fa.scan(match.match, match.match.scanned);
+
+					if(!matched) {
+						match.match.backtrack(match.match.scanned);
+						break;
+					}
+					match.index += match.match.scanned.length();
+				}
+				return i >= minCount;
+			};
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			body.regexes(result);
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return minCount > 0 ? body.leadingRegex() : null;
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return minCount == 0 || body.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return "loop(" + minCount + ", " + maxCount + ", " + body + ")";
+		}
+
+	}
+
+	/**
+	 * A node which matches operands and operators by precedence climbing.<br>
+	 * Operands and operators which are not reduced yet are kept in stacks,
+	 * so an expression is matched in one loop however many levels of precedence are defined.
+	 * The stacks are shared by all expressions in a match and each expression uses the part above its base.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Operators<A> extends Node<A> {
+
+		/**
+		 * An operator.<br>
+		 * The regular expression of an operator must not match the empty string,
+		 * or operators would be matched forever without consuming characters.
+		 * This is checked by the syntax of the regular expression,
+		 * so the regular expression is compiled lazily like other regular expressions.
+		 *
+		 * @param <A> type of attribute
+		 */
+		/*package*/ static final class Operator<A> {
+
+			private final Regex<A> regex;
+			private final int precedence;
+			private final boolean left;
+			private final BinaryOperator<A> binary;
+			private final UnaryOperator<A> unary;
+			private final LongBinaryOperator primitiveBinary;
+			private final LongUnaryOperator primitiveUnary;
+
+			private Operator(String regex, int precedence, boolean left,
+					BinaryOperator<A> binary, UnaryOperator<A> unary,
+					LongBinaryOperator primitiveBinary, LongUnaryOperator primitiveUnary) {
+				if(RegexMatcher.nullable(regex)) {
+					throw new NeneException("operator matches the empty string: " + regex);
+				}
+				this.regex = new Regex<A>(regex);
+				this.precedence = precedence;
+				this.left = left;
+				this.binary = binary;
+				this.unary = unary;
+				this.primitiveBinary = primitiveBinary;
+				this.primitiveUnary = primitiveUnary;
+			}
+
+			/*package*/ Operator(String regex, int precedence, boolean left, BinaryOperator<A> binary) {
+				this(regex, precedence, left, binary, null, null, null);
+			}
+
+			/*package*/ Operator(String regex, int precedence, UnaryOperator<A> unary) {
+				this(regex, precedence, true, null, unary, null, null);
+			}
+
+			/*package*/ Operator(String regex, int precedence, boolean left, LongBinaryOperator binary) {
+				this(regex, precedence, left, null, null, binary, null);
+			}
+
+			/*package*/ Operator(String regex, int precedence, LongUnaryOperator unary) {
+				this(regex, precedence, true, null, null, null, unary);
+			}
+
+			@Override
+			public String toString() {
+				return regex.regex + "/" + precedence;
+			}
+
+		}
+
+		/**
+		 * Stacks of operands and operators.
+		 *
+		 * @param <A> type of attribute
+		 */
+		/*package*/ static final class Stack<A> {
+
+			private Object[] values = new Object[8];
+			private long[] primitives = new long[8];
+			private int valuePtr = 0;
+			private Object[] operators = new Object[8];
+			private int operatorPtr = 0;
+
+			private void push(Object value, long primitive) {
+				if(valuePtr >= values.length) {
+					values = Arrays.copyOf(values, values.length * 2);
+					primitives = Arrays.copyOf(primitives, primitives.length * 2);
+				}
+				values[valuePtr] = value;
+				primitives[valuePtr++] = primitive;
+			}
+
+			private void push(Operator<A> operator) {
+				if(operatorPtr >= operators.length) {
+					operators = Arrays.copyOf(operators, operators.length * 2);
+				}
+				operators[operatorPtr++] = operator;
+			}
+
+			@SuppressWarnings("unchecked")
+			private A value(int i) {
+				return (A)values[i];
+			}
+
+			private void apply(Operator<A> operator) {
+				int top = valuePtr - 1;
+
+				if(operator.unary != null) {
+					values[top] = operator.unary.apply(value(top));
+				} else if(operator.primitiveUnary != null) {
+					primitives[top] = operator.primitiveUnary.applyAsLong(primitives[top]);
+				} else if(operator.binary != null) {
+					values[top - 1] = operator.binary.apply(value(top - 1), value(top));
+					values[--valuePtr] = null;
+				} else {
+					primitives[top - 1] = operator.primitiveBinary.applyAsLong(primitives[top - 1], primitives[top]);
+					valuePtr--;
+				}
+			}
+
+			/*
+			 * reduces the operators above the base which bind tighter than the given operator.
+			 */
+			@SuppressWarnings("unchecked")
+			private void reduce(int operatorBase, Operator<A> operator) {
+				while(operatorPtr > operatorBase) {
+					Operator<A> top = (Operator<A>)operators[operatorPtr - 1];
+
+					if(operator != null &&
+							(top.precedence < operator.precedence ||
+							(top.precedence == operator.precedence && !operator.left))) {
+						break;
+					}
+					operators[--operatorPtr] = null;
+					apply(top);
+				}
+			}
+
+			private void pop(int valueBase, int operatorBase) {
+				Arrays.fill(values, valueBase, valuePtr, null);
+				Arrays.fill(operators, operatorBase, operatorPtr, null);
+				valuePtr = valueBase;
+				operatorPtr = operatorBase;
+			}
+
+		}
+
+		/*package*/ final Node<A> operand;
+		/*package*/ final List<Operator<A>> prefixes;
+		/*package*/ final List<Operator<A>> infixes;
+		/*package*/ final List<Operator<A>> postfixes;
+		private final boolean primitive;
+
+		/*package*/ Operators(Node<A> operand, List<Operator<A>> prefixes, List<Operator<A>> infixes,
+				List<Operator<A>> postfixes, boolean primitive) {
+			this.operand = operand;
+			this.prefixes = Collections.unmodifiableList(new ArrayList<Operator<A>>(prefixes));
+			this.infixes = Collections.unmodifiableList(new ArrayList<Operator<A>>(infixes));
+			this.postfixes = Collections.unmodifiableList(new ArrayList<Operator<A>>(postfixes));
+			this.primitive = primitive;
+		}
+
+		private static <A> Operator<A> find(MatchInfo<A> match, List<Operator<A>> operators) throws IOException {
+			for(Operator<A> operator : operators) {
+				boolean matched = operator.regex.fa.scan(match.match, match.match.scanned);
+
+				if(matched) {
+					match.index += match.match.scanned.length();
+					return operator;
+				} else {
+					match.match.backtrack(match.match.scanned);
+				}
+			}
+			return null;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final Rule<A> rule = operand.compile();
+			final List<Operator<A>> prefixes = this.prefixes;
+			final List<Operator<A>> infixes = this.infixes;
+			final List<Operator<A>> postfixes = this.postfixes;
+			final boolean primitive = this.primitive;
+
+			return match -> {
+				Stack<A> stack = match.stack == null ? (match.stack = new Stack<A>()) : match.stack;
+				int valueBase = stack.valuePtr;
+				int operatorBase = stack.operatorPtr;
+				A attr = match.attr;
+				long bits = match.primitive;
+				Operator<A> operator;
+
+				while(true) {
+					match.step();
+					if((operator = find(match, prefixes)) != null) {
+						stack.push(operator);
+						continue;
+					}
+
+					match.attr = attr;
+					match.primitive = bits;
+					if(!rule.match(match)) {
+						stack.pop(valueBase, operatorBase);
+						return false;
+					}
+					stack.push(primitive ? null : match.attr(), match.primitive);
+
+					while((operator = find(match, postfixes)) != null) {
+						match.step();
+						stack.reduce(operatorBase, operator);
+						stack.apply(operator);
+					}
+
+					if((operator = find(match, infixes)) == null) {
+						break;
+					}
+					stack.reduce(operatorBase, operator);
+					stack.push(operator);
+				}
+				stack.reduce(operatorBase, null);
+				if(primitive) {
+					match.primitive = stack.primitives[valueBase];
+				} else {
+					match.attr(stack.value(valueBase));
+				}
+				stack.pop(valueBase, operatorBase);
+				return true;
+			};
+		}
+
+		@Override
+		/*package*/ Node<A> optimize() {
+			return new Operators<A>(operand.optimize(), prefixes, infixes, postfixes, primitive);
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			operand.regexes(result);
+			for(List<Operator<A>> operators : Arrays.asList(prefixes, infixes, postfixes)) {
+				for(Operator<A> operator : operators) {
+					operator.regex.regexes(result);
+				}
+			}
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return operand.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return "operators(" + operand + ", prefix" + prefixes + ", infix" + infixes + ", postfix" + postfixes + ")";
+		}
+
+	}
+
+	/**
+	 * A node which records statistics of its body to a profiler.<br>
+	 * The time of named nodes in the body is excluded from the exclusive time of this node.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Named<A> extends Node<A> {
+
+		/*package*/ final Profiler.Entry entry;
+		/*package*/ final Node<A> body;
+
+		/*package*/ Named(Profiler.Entry entry, Node<A> body) {
+			this.entry = entry;
+			this.body = body;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final Profiler.Entry entry = this.entry;
+			final Rule<A> body = this.body.compile();
+
+			return match -> {
+				long outer = match.profiledNanos;
+				long backtracked = match.match.backtracked;
+				int index = match.index;
+				long start = System.nanoTime();
+				boolean result = false;
+
+				match.profiledNanos = 0;
+				try {
+					return result = body.match(match);
+				} finally {
+					long elapsed = System.nanoTime() - start;
+
+					entry.record(result,
+							match.index - index,
+							match.match.backtracked - backtracked,
+							elapsed,
+							elapsed - match.profiledNanos);
+					match.profiledNanos = outer + elapsed;
+				}
+			};
+		}
+
+		@Override
+		/*package*/ Node<A> optimize() {
+			return new Named<A>(entry, body.optimize());
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			body.regexes(result);
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return body.leadingRegex();
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return body.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return entry.getName() + "(" + body + ")";
+		}
+
+	}
+
+	/**
+	 * A node which sends the start and the end of the body to the listener of the match.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Event<A> extends Node<A> {
+
+		/*package*/ final String name;
+		/*package*/ final Node<A> body;
+
+		/*package*/ Event(String name, Node<A> body) {
+			this.name = name;
+			this.body = body;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final String name = this.name;
+			final Rule<A> body = this.body.compile();
+
+			return match -> {
+				EventLog events = match.events;
+				int start = match.index;
+
+				if(events == null) {
+					return body.match(match);
+				}
+				events.enter(name, start);
+				if(!body.match(match)) {
+					return false;
+				}
+				events.exit(name, start, match.index);
+				return true;
+			};
+		}
+
+		@Override
+		/*package*/ Node<A> optimize() {
+			return new Event<A>(name, body.optimize());
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			body.regexes(result);
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return body.leadingRegex();
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return body.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return "event(" + name + ", " + body + ")";
+		}
+
+	}
+
+	/**
+	 * A node which matches a regular expression and sends the scanned characters to the listener of the match.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Token<A> extends Node<A> {
+
+		/*package*/ final String name;
+		/*package*/ final String regex;
+		private final RegexMatcher fa;
+
+		/*package*/ Token(String name, String regex) {
+			this.name = name;
+			this.regex = regex;
+			this.fa = Nene.compileRegex(regex);
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final String name = this.name;
+			final RegexMatcher fa = this.fa;
+
+			return match -> {
+				int start = match.index;
+				boolean matched = fa.scan(match.match, match.match.scanned);
+
+				if(matched) {
+					match.index += match.match.scanned.length();
+					if(match.events != null) {
+						match.events.token(name, start, match.match.scanned);
+					}
+					return true;
+				} else {
+					match.match.backtrack(match.match.scanned);
+					return false;
+				}
+			};
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			result.add(regex);
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return regex;
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return fa.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return "token(" + name + ", " + regex + ")";
+		}
+
+	}
+
+	/**
+	 * A node which calls an executer given by user.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Call<A> extends Node<A> {
+
+		private final Executer<A> executer;
+
+		/*package*/ Call(Executer<A> executer) {
+			this.executer = executer;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			final Executer<A> executer = this.executer;
+
+			return match -> {
+				Result<A> result;
+
+				match.step();
+				result = executer.match(match, match.index, match.attr());
+
+				if(result == null) {
+					return false;
+				} else {
+					match.index = result.index;
+					match.attr(result.attr);
+					return true;
+				}
+			};
+		}
+
+		@Override
+		public String toString() {
+			return "call";
+		}
+
+	}
+
+	/**
+	 * A node which refers the pattern defined by letrec.<br>
+	 * Recursion of patterns is the only way to nest matching deeply,
+	 * so a reference counts the depth of nesting and stops a match which nests deeper than the limit.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Ref<A> extends Node<A> implements Executer<A>, Rule<A> {
+
+		/*package*/ Node<A> target;
+		private Rule<A> rule;
+
+		/*
+		 * an executer may try another pattern after this fails,
+		 * so events of this are removed if this fails.
+		 */
+		@Override
+		public Result<A> match(MatchInfo<A> match, int index, A attr) throws IOException {
+			int mark = match.events != null ? match.events.mark() : 0;
+
+			match.index = index;
+			match.attr(attr);
+			if(match(match)) {
+				return new Result<A>(match.index, match.attr());
+			} else if(match.events != null) {
+				match.events.truncate(mark);
+			}
+			return null;
+		}
+
+		@Override
+		public boolean match(MatchInfo<A> match) throws IOException {
+			if(match.depth == match.nestingLimit) {
+				throw new NeneException("nesting limit exceeded: " + match.nestingLimit);
+			}
+			match.step();
+
+			match.depth++;
+			try {
+				return rule.match(match);
+			} finally {
+				match.depth--;
+			}
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			return this;
+		}
+
+		@Override
+		public String toString() {
+			return "ref@" + Integer.toHexString(System.identityHashCode(this));
+		}
+
+	}
+
+	/**
+	 * A node which defines a recursive pattern.
+	 *
+	 * @param <A> type of attribute
+	 */
+	/*package*/ static final class Letrec<A> extends Node<A> {
+
+		/*package*/ final Ref<A> ref;
+		/*package*/ final Node<A> body;
+
+		/*package*/ Letrec(Ref<A> ref, Node<A> body) {
+			this.ref = ref;
+			this.body = body;
+			ref.target = body;
+		}
+
+		@Override
+		/*package*/ Rule<A> compile() {
+			Rule<A> rule = body.compile();
+
+			ref.rule = rule;
+			return rule;
+		}
+
+		@Override
+		/*package*/ Node<A> optimize() {
+			return new Letrec<A>(ref, body.optimize());
+		}
+
+		@Override
+		/*package*/ void regexes(Collection<String> result) {
+			body.regexes(result);
+		}
+
+		@Override
+		/*package*/ String leadingRegex() {
+			return body.leadingRegex();
+		}
+
+		@Override
+		/*package*/ boolean nullable() {
+			return body.nullable();
+		}
+
+		@Override
+		public String toString() {
+			return "letrec(" + ref + ", " + body + ")";
+		}
+
+	}
+
+}
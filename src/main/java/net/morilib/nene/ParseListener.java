@@ -0,0 +1,48 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+/**
+ * A listener of events of a match which is streamed by {@link Nene#stream(Nene.Builder, java.io.Reader, ParseListener)}.<br>
+ * Events are sent in the order of the input, and events of patterns which are backtracked are never sent.
+ * Indices are indices of characters of the input.
+ */
+public interface ParseListener {
+
+	/**
+	 * receives the start of a pattern named by {@link Nene#event(String, Nene.Builder)}.
+	 *
+	 * @param name name of the pattern
+	 * @param start first index of the pattern
+	 */
+	public void enter(String name, int start);
+
+	/**
+	 * receives the end of a pattern named by {@link Nene#event(String, Nene.Builder)}.
+	 *
+	 * @param name name of the pattern
+	 * @param start first index of the pattern
+	 * @param end index next to the last character of the pattern
+	 */
+	public void exit(String name, int start, int end);
+
+	/**
+	 * receives a token matched by {@link Nene#token(String, String)}.<br>
+	 * The characters of the token are text[offset] to text[offset + end - start - 1],
+	 * and the array is valid only while this method is executed.
+	 *
+	 * @param name name of the token
+	 * @param start first index of the token
+	 * @param end index next to the last character of the token
+	 * @param text array which has the characters of the token
+	 * @param offset index of the first character of the token in the array
+	 */
+	public void token(String name, int start, int end, char[] text, int offset);
+
+}
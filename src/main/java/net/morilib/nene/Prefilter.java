@@ -0,0 +1,202 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.morilib.automaton2.RegexParser;
+
+/**
+ * A filter of positions at which a regular expression can start to match.<br>
+ * Positions are filtered by the literal prefix which every match starts with by Boyer-Moore-Horspool
+ * or by the set of the first characters of matches if the literal prefix is too short.
+ * The filter also has the automaton of the regular expression which can start anywhere,
+ * which finds the end of the first match in one pass, so positions after the last match are not tried.
+ */
+/*package*/ final class Prefilter {
+
+	private static final int LATIN = 256;
+
+	/*
+	 * a sequence of characters of a text which is read by the automaton
+	 */
+	private static final class TextSequence implements Sequence {
+
+		private final CharSequence text;
+		private int index;
+
+		private TextSequence(CharSequence text, int index) {
+			this.text = text;
+			this.index = index;
+		}
+
+		@Override
+		public int read() {
+			return index < text.length() ? text.charAt(index++) : -1;
+		}
+
+		@Override
+		public void unread(int ch) {
+			index--;
+		}
+
+	}
+
+	private final String literal;
+	private final CharClass first;
+	private final RegexMatcher unanchored;
+	private final int[] shifts;
+
+	private Prefilter(String regex, RegexMatcher fa) {
+		this.literal = literalPrefix(regex);
+		this.first = new CharClass("first(" + regex + ")", fa::canStart);
+		this.unanchored = Nene.compileRegex(unanchored(regex));
+		if(literal.length() > 1) {
+			int last = literal.length() - 1;
+
+			shifts = new int[LATIN];
+			Arrays.fill(shifts, literal.length());
+			for(int i = 0; i < last; i++) {
+				char ch = literal.charAt(i);
+
+				if(ch < LATIN) {
+					shifts[ch] = last - i;
+				}
+			}
+		} else {
+			shifts = null;
+		}
+	}
+
+	/**
+	 * creates a filter of the given regular expression.
+	 *
+	 * @param regex regular expression
+	 * @param fa compiled regular expression
+	 * @return the filter or null if the regular expression matches the empty string
+	 */
+	/*package*/ static Prefilter of(String regex, RegexMatcher fa) {
+		return fa.nullable() ? null : new Prefilter(regex, fa);
+	}
+
+	/**
+	 * gets the literal string which every match of the regular expression starts with.
+	 *
+	 * @param regex regular expression
+	 * @return the literal prefix which may be empty
+	 */
+	/*package*/ static String literalPrefix(String regex) {
+		int end = Node.literalLength(regex);
+
+		if(regex.indexOf('|') >= 0) {
+			return "";
+		} else if(end < regex.length() && end > 0 && regex.charAt(end) == '*') {
+			end--;
+		}
+		return regex.substring(0, end);
+	}
+
+	/**
+	 * gets the regular expression which matches the given regular expression after any characters.
+	 *
+	 * @param regex regular expression
+	 * @return the regular expression which can start anywhere
+	 */
+	/*package*/ static String unanchored(String regex) {
+		if(regex.startsWith(RegexParser.CASE_INSENSITIVE)) {
+			return RegexParser.CASE_INSENSITIVE + "[\\s\\S]*(" + regex.substring(RegexParser.CASE_INSENSITIVE.length()) + ")";
+		} else {
+			return "[\\s\\S]*(" + regex + ")";
+		}
+	}
+
+	/**
+	 * finds the end of the first match which starts at or after the given index.<br>
+	 * No match starts after the end, so the positions to try are the positions up to the end.
+	 *
+	 * @param text text to search
+	 * @param from the first index to search
+	 * @return the end or -1 if no match starts at or after the index
+	 */
+	/*package*/ int end(CharSequence text, int from) {
+		try {
+			int length = unanchored.scanFirst(new TextSequence(text, from), null, Integer.MAX_VALUE);
+
+			return length < 0 ? -1 : from + length;
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * reads the given sequence to find the end of the first match.<br>
+	 * Read characters are left in the buffer to be pushed back by the caller.
+	 *
+	 * @param sequence sequence to read
+	 * @param scanned buffer to which read characters are written
+	 * @param limit maximum number of characters to read
+	 * @return number of characters to the end or -1 if no match ends until the end of sequence or the limit
+	 * @throws IOException I/O exception
+	 */
+	/*package*/ int end(Sequence sequence, ScanBuffer scanned, int limit) throws IOException {
+		scanned.clear();
+		return unanchored.scanFirst(sequence, scanned, limit);
+	}
+
+	/**
+	 * gets the set of the first characters of matches.
+	 *
+	 * @return the set of characters
+	 */
+	/*package*/ CharClass first() {
+		return first;
+	}
+
+	/**
+	 * finds the first position at which the regular expression can start to match.
+	 *
+	 * @param text text to search
+	 * @param from the first index to search
+	 * @return the position or -1 if no match starts after the index
+	 */
+	/*package*/ int next(CharSequence text, int from) {
+		int last;
+
+		if(shifts == null) {
+			for(int i = from; i < text.length(); i++) {
+				if(first.contains(text.charAt(i))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		last = literal.length() - 1;
+		for(int i = from; i + last < text.length();) {
+			char ch = text.charAt(i + last);
+			int j = last;
+
+			while(j >= 0 && text.charAt(i + j) == literal.charAt(j)) {
+				j--;
+			}
+			if(j < 0) {
+				return i;
+			}
+			i += ch < LATIN ? shifts[ch] : 1;
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return literal.length() > 1 ? literal : first.toString();
+	}
+
+}
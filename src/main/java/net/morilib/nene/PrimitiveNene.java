@@ -0,0 +1,162 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Base of parsing libraries whose attribute is a primitive.<br>
+ * The attribute is kept as bits of a long in the primitive register while matching,
+ * and subclasses convert their attributes to and from the bits.
+ *
+ * @param <A> boxed type of attribute
+ * @param <N> type of the subclass which is returned by setters
+ */
+/*package*/ abstract class PrimitiveNene<A, N extends PrimitiveNene<A, N>> extends Nene<A> {
+
+	/**
+	 * Operators whose actions take bits of attributes.
+	 */
+	/*package*/ final class PrimitiveOperators {
+
+		private final Node<A> operand;
+		private final List<Node.Operators.Operator<A>> prefixes = new ArrayList<Node.Operators.Operator<A>>();
+		private final List<Node.Operators.Operator<A>> infixes = new ArrayList<Node.Operators.Operator<A>>();
+		private final List<Node.Operators.Operator<A>> postfixes = new ArrayList<Node.Operators.Operator<A>>();
+
+		/*package*/ PrimitiveOperators(Node<A> operand) {
+			this.operand = operand;
+		}
+
+		/*package*/ void infix(String regex, int precedence, boolean left, LongBinaryOperator action) {
+			infixes.add(new Node.Operators.Operator<A>(foldCase(regex), precedence, left, action));
+		}
+
+		/*package*/ void prefix(String regex, int precedence, LongUnaryOperator action) {
+			prefixes.add(new Node.Operators.Operator<A>(foldCase(regex), precedence, action));
+		}
+
+		/*package*/ void postfix(String regex, int precedence, LongUnaryOperator action) {
+			postfixes.add(new Node.Operators.Operator<A>(foldCase(regex), precedence, action));
+		}
+
+		/*package*/ Node<A> node() {
+			return new Node.Operators<A>(operand, prefixes, infixes, postfixes, true);
+		}
+
+	}
+
+	/**
+	 * converts the given attribute to bits.
+	 *
+	 * @param attr attribute
+	 * @return bits of the attribute
+	 */
+	/*package*/ abstract long bits(A attr);
+
+	/**
+	 * converts the given bits to an attribute.
+	 *
+	 * @param bits bits of an attribute
+	 * @return the attribute
+	 */
+	/*package*/ abstract A attribute(long bits);
+
+	@SuppressWarnings("unchecked")
+	private N self() {
+		return (N)this;
+	}
+
+	@Override
+	/*package*/ A getAttribute(MatchInfo<A> match) {
+		return attribute(match.primitive);
+	}
+
+	@Override
+	/*package*/ void setAttribute(MatchInfo<A> match, A attr) {
+		match.primitive = bits(attr);
+	}
+
+	@Override
+	public N nestingLimit(int nestingLimit) {
+		super.nestingLimit(nestingLimit);
+		return self();
+	}
+
+	@Override
+	public N stepLimit(long stepLimit) {
+		super.stepLimit(stepLimit);
+		return self();
+	}
+
+	@Override
+	public N rereadLimit(long rereadLimit) {
+		super.rereadLimit(rereadLimit);
+		return self();
+	}
+
+	@Override
+	public N timeLimit(long timeLimit) {
+		super.timeLimit(timeLimit);
+		return self();
+	}
+
+	@Override
+	public N interruptible(boolean interruptible) {
+		super.interruptible(interruptible);
+		return self();
+	}
+
+	@Override
+	public N lineIndex(boolean lineIndex) {
+		super.lineIndex(lineIndex);
+		return self();
+	}
+
+	@Override
+	public N caseInsensitive(boolean caseInsensitive) {
+		super.caseInsensitive(caseInsensitive);
+		return self();
+	}
+
+	@Override
+	public N profiler(Profiler profiler) {
+		super.profiler(profiler);
+		return self();
+	}
+
+	@Override
+	public N metrics(NeneMetrics metrics) {
+		super.metrics(metrics);
+		return self();
+	}
+
+	/**
+	 * starts matching of the given builder with the given reader and initial bits of attribute.
+	 *
+	 * @param builder builder to match
+	 * @param reader reader to match
+	 * @param bits bits of initial attribute
+	 * @return the state after matching or null if pattern is not matched
+	 * @throws IOException I/O exception
+	 */
+	/*package*/ MatchInfo<A> matchBits(Builder<A> builder, Reader reader, long bits) throws IOException {
+		MatchInfo<A> match = newMatchInfo(reader);
+
+		match.index = 0;
+		match.primitive = bits;
+		return match.run(builder.build()) ? match : null;
+	}
+
+}
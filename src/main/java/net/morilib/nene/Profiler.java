@@ -0,0 +1,211 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A profiler which records statistics of named patterns.<br>
+ * A profiler is given to {@link Nene#profiler(Profiler)} before patterns are named
+ * by {@link Nene#named(String, Nene.Builder)}.
+ */
+public final class Profiler {
+
+	/**
+	 * Statistics of a named pattern.
+	 */
+	public static final class Entry {
+
+		private final String name;
+		private long invocations;
+		private long successes;
+		private long scanned;
+		private long backtracked;
+		private long inclusiveNanos;
+		private long exclusiveNanos;
+
+		private Entry(String name) {
+			this.name = name;
+		}
+
+		private Entry(Entry entry) {
+			this.name = entry.name;
+			this.invocations = entry.invocations;
+			this.successes = entry.successes;
+			this.scanned = entry.scanned;
+			this.backtracked = entry.backtracked;
+			this.inclusiveNanos = entry.inclusiveNanos;
+			this.exclusiveNanos = entry.exclusiveNanos;
+		}
+
+		/*package*/ synchronized void record(boolean success,
+				int scanned,
+				long backtracked,
+				long inclusiveNanos,
+				long exclusiveNanos) {
+			invocations++;
+			if(success) {
+				successes++;
+				this.scanned += scanned;
+			}
+			this.backtracked += backtracked;
+			this.inclusiveNanos += inclusiveNanos;
+			this.exclusiveNanos += exclusiveNanos;
+		}
+
+		/**
+		 * gets the name of the pattern.
+		 *
+		 * @return the name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * gets the number of invocations.
+		 *
+		 * @return the number of invocations
+		 */
+		public long getInvocations() {
+			return invocations;
+		}
+
+		/**
+		 * gets the number of invocations which succeeded.
+		 *
+		 * @return the number of successes
+		 */
+		public long getSuccesses() {
+			return successes;
+		}
+
+		/**
+		 * gets the number of invocations which failed.
+		 *
+		 * @return the number of failures
+		 */
+		public long getFailures() {
+			return invocations - successes;
+		}
+
+		/**
+		 * gets the number of characters consumed by invocations which succeeded.
+		 *
+		 * @return the number of characters
+		 */
+		public long getScanned() {
+			return scanned;
+		}
+
+		/**
+		 * gets the number of characters pushed back while the pattern is matched.
+		 *
+		 * @return the number of characters
+		 */
+		public long getBacktracked() {
+			return backtracked;
+		}
+
+		/**
+		 * gets the time including the time of named patterns called by the pattern.
+		 *
+		 * @return the time in nanoseconds
+		 */
+		public long getInclusiveNanos() {
+			return inclusiveNanos;
+		}
+
+		/**
+		 * gets the time excluding the time of named patterns called by the pattern.
+		 *
+		 * @return the time in nanoseconds
+		 */
+		public long getExclusiveNanos() {
+			return exclusiveNanos;
+		}
+
+	}
+
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+	/**
+	 * creates a profiler.
+	 */
+	public Profiler() {}
+
+	/*package*/ synchronized Entry entry(String name) {
+		Entry entry = entries.get(name);
+
+		if(entry == null) {
+			entries.put(name, entry = new Entry(name));
+		}
+		return entry;
+	}
+
+	/**
+	 * gets a snapshot of statistics sorted by the exclusive time in descending order.
+	 *
+	 * @return list of statistics
+	 */
+	public List<Entry> entries() {
+		List<Entry> result = new ArrayList<Entry>();
+
+		synchronized(this) {
+			for(Entry entry : entries.values()) {
+				synchronized(entry) {
+					result.add(new Entry(entry));
+				}
+			}
+		}
+		Collections.sort(result, (x, y) -> Long.compare(y.exclusiveNanos, x.exclusiveNanos));
+		return result;
+	}
+
+	/**
+	 * resets all statistics.
+	 */
+	public synchronized void reset() {
+		for(Entry entry : entries.values()) {
+			synchronized(entry) {
+				entry.invocations = entry.successes = entry.scanned = entry.backtracked = 0;
+				entry.inclusiveNanos = entry.exclusiveNanos = 0;
+			}
+		}
+	}
+
+	/**
+	 * returns a report of statistics sorted by the exclusive time in descending order.
+	 *
+	 * @return the report
+	 */
+	public String report() {
+		StringBuilder builder = new StringBuilder();
+
+		builder.append(String.format("%-24s %10s %10s %10s %12s %12s %12s %12s%n",
+				"name", "calls", "success", "failure", "scanned", "backtracked", "incl(us)", "excl(us)"));
+		for(Entry entry : entries()) {
+			builder.append(String.format("%-24s %10d %10d %10d %12d %12d %12d %12d%n",
+					entry.name,
+					entry.invocations,
+					entry.successes,
+					entry.getFailures(),
+					entry.scanned,
+					entry.backtracked,
+					entry.inclusiveNanos / 1000,
+					entry.exclusiveNanos / 1000));
+		}
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import net.morilib.automaton2.RegexParseException;
+import net.morilib.automaton2.RegexParser;
+import net.morilib.automaton2.SubsetDFA;
+
+/**
+ * A compiled regular expression.<br>
+ * Scanned characters are written to a buffer given by the caller,
+ * so that no string is created unless it is required.
+ * The regular expression is compiled when it is matched at first or by {@link Nene#warmUp()},
+ * so a syntax error is also thrown at that time.
+ */
+/*package*/ final class RegexMatcher implements ConditionMatcher, Compilable {
+
+	/*
+	 * matchers of all instances of Nene which are not compiled yet, which are forgotten if they are collected
+	 */
+	private static final Set<Compilable> pending =
+			Collections.newSetFromMap(new WeakHashMap<Compilable, Boolean>());
+
+	private final String regex;
+	private SubsetDFA dfa;
+	private Snapshot.Table table;
+
+	/*
+	 * the automaton is published to threads by writing this flag after it
+	 */
+	private volatile boolean compiled;
+
+	/*
+	 * whether the empty string is matched, which is got from the syntax when a grammar is built
+	 */
+	private volatile Boolean nullable;
+
+	/*package*/ RegexMatcher(String regex) {
+		this.regex = regex;
+		register(this);
+	}
+
+	/**
+	 * registers the given matcher as a matcher which is not compiled yet.
+	 *
+	 * @param matcher matcher to register
+	 */
+	/*package*/ static void register(Compilable matcher) {
+		synchronized(pending) {
+			pending.add(matcher);
+		}
+	}
+
+	/**
+	 * removes the given matcher from matchers which are not compiled yet.
+	 *
+	 * @param matcher compiled matcher
+	 */
+	/*package*/ static void compiled(Compilable matcher) {
+		synchronized(pending) {
+			pending.remove(matcher);
+		}
+	}
+
+	/**
+	 * gets matchers which are not compiled yet.
+	 *
+	 * @return list of matchers
+	 */
+	/*package*/ static List<Compilable> pending() {
+		synchronized(pending) {
+			return new ArrayList<Compilable>(pending);
+		}
+	}
+
+	/**
+	 * compiles the regular expression if it is not compiled yet.<br>
+	 * The table of the installed snapshot is used if the snapshot has the regular expression.
+	 * A regular expression which has a syntax error is kept not compiled,
+	 * so the error is thrown every time this is called.
+	 *
+	 * @throws NeneException syntax error
+	 */
+	@Override
+	public void compile() {
+		if(compiled) {
+			return;
+		}
+
+		try {
+			synchronized(this) {
+				if(!compiled) {
+					if((table = Snapshot.find(regex)) == null) {
+						dfa = new SubsetDFA(RegexParser.parse(regex));
+					}
+					compiled = true;
+					compiled(this);
+				}
+			}
+		} catch (RegexParseException e) {
+			throw new NeneException("invalid regular expression: " + regex, e);
+		}
+	}
+
+	/**
+	 * scans the given sequence.<br>
+	 * The longest matched characters are scanned and characters read after them are pushed back.
+	 * If the regular expression is not matched, all read characters are left in the buffer
+	 * to be pushed back by the caller.
+	 *
+	 * @param sequence sequence to scan
+	 * @param scanned buffer to which scanned characters are written
+	 * @return true if the regular expression is matched
+	 * @throws IOException I/O exception
+	 */
+	/*package*/ boolean scan(Sequence sequence, ScanBuffer scanned) throws IOException {
+		SubsetDFA.State state;
+		int accepted;
+
+		compile();
+		if(table != null) {
+			return table.scan(sequence, scanned);
+		}
+
+		state = dfa.getStartState();
+		accepted = state.isAccept() ? 0 : -1;
+		scanned.clear();
+		while(true) {
+			int ch = sequence.read();
+
+			if(ch < 0) {
+				break;
+			} else if((state = dfa.transit(state, (char)ch)).isDead()) {
+				sequence.unread((char)ch);
+				break;
+			}
+			scanned.append((char)ch);
+			if(state.isAccept()) {
+				accepted = scanned.length();
+			}
+		}
+		return scanned.accept(sequence, accepted);
+	}
+
+	/**
+	 * reads the given sequence until the regular expression is matched at first.<br>
+	 * This finds the shortest match instead of the longest match,
+	 * so a regular expression which can start anywhere tells where the first match ends.
+	 * Read characters are appended to the given buffer and are not pushed back.
+	 *
+	 * @param sequence sequence to read
+	 * @param scanned buffer to which read characters are appended, or null
+	 * @param limit maximum number of characters to read
+	 * @return number of read characters at the first match
+	 *     or -1 if no match is found until the end or the limit
+	 * @throws IOException I/O exception
+	 */
+	/*package*/ int scanFirst(Sequence sequence, ScanBuffer scanned, int limit) throws IOException {
+		SubsetDFA.State state = null;
+		int current = 0;
+
+		compile();
+		if(table == null) {
+			state = dfa.getStartState();
+		}
+		for(int length = 0; true; length++) {
+			int ch;
+
+			if(table != null ? table.accepts(current) : state.isAccept()) {
+				return length;
+			} else if(length >= limit || (ch = sequence.read()) < 0) {
+				return -1;
+			}
+
+			if(table != null) {
+				current = table.next(current, ch);
+			} else {
+				state = dfa.transit(state, (char)ch);
+			}
+			if(table != null ? current < 0 : state.isDead()) {
+				sequence.unread(ch);
+				return -1;
+			} else if(scanned != null) {
+				scanned.append((char)ch);
+			}
+		}
+	}
+
+	/**
+	 * returns true if the given regular expression matches the empty string.<br>
+	 * The regular expression is not compiled, so this can be called while a grammar is built.
+	 * A syntax error is not thrown here but when the regular expression is compiled,
+	 * so this returns false for a regular expression which has a syntax error.
+	 *
+	 * @param regex regular expression
+	 * @return true if the empty string is matched
+	 */
+	/*package*/ static boolean nullable(String regex) {
+		try {
+			return RegexParser.nullable(regex);
+		} catch(RegexParseException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * returns true if the regular expression matches the empty string.<br>
+	 * The regular expression is not compiled by this method.
+	 *
+	 * @return true if the empty string is matched
+	 */
+	/*package*/ boolean nullable() {
+		Boolean result = nullable;
+
+		if(result == null) {
+			nullable = result = nullable(regex);
+		}
+		return result;
+	}
+
+	/**
+	 * returns true if a match can start with the given character.
+	 *
+	 * @param ch the character
+	 * @return true if a match can start with the character
+	 */
+	/*package*/ boolean canStart(char ch) {
+		compile();
+		return table != null ? table.next(0, ch) >= 0 : !dfa.transit(dfa.getStartState(), ch).isDead();
+	}
+
+	@Override
+	public ConditionResult run(Sequence input) throws IOException {
+		ScanBuffer scanned = new ScanBuffer();
+		boolean matched = scan(input, scanned);
+
+		return new ConditionResult(scanned.toString(), matched);
+	}
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.io.IOException;
+
+import net.morilib.nene.Nene.MatchInfo;
+
+/**
+ * Compiled form of a node.<br>
+ * A rule reads the current index and the inherited attribute from the registers of
+ * the given state and writes the result to the registers,
+ * so that no result object is allocated while matching.
+ *
+ * @param <A> type of attribute
+ */
+@FunctionalInterface
+/*package*/ interface Rule<A> {
+
+	/**
+	 * matches the given input.
+	 *
+	 * @param match state of input whose registers hold the index and the attribute
+	 * @return true if the pattern is matched
+	 * @throws IOException I/O exception
+	 */
+	public boolean match(MatchInfo<A> match) throws IOException;
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer of characters scanned by a regular expression.<br>
+ * The buffer is a view of the scanned characters,
+ * so the contents are valid only until the next scanning.
+ */
+/*package*/ final class ScanBuffer implements CharSequence {
+
+	private char[] chars = new char[16];
+	private int length = 0;
+
+	/*package*/ void clear() {
+		length = 0;
+	}
+
+	/*package*/ void append(char ch) {
+		if(length >= chars.length) {
+			chars = Arrays.copyOf(chars, chars.length * 2);
+		}
+		chars[length++] = ch;
+	}
+
+	/*package*/ void append(char[] array, int start, int end) {
+		if(length + end - start > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + end - start));
+		}
+		System.arraycopy(array, start, chars, length, end - start);
+		length += end - start;
+	}
+
+	/*package*/ void append(ScanBuffer buffer) {
+		for(int i = 0; i < buffer.length; i++) {
+			append(buffer.chars[i]);
+		}
+	}
+
+	/*
+	 * keeps the characters up to the last accepted length and pushes back the rest.
+	 * If no length is accepted, all characters are kept to be pushed back by the caller.
+	 */
+	/*package*/ boolean accept(Sequence sequence, int accepted) {
+		if(accepted < 0) {
+			return false;
+		}
+		for(int i = length - 1; i >= accepted; i--) {
+			sequence.unread(chars[i]);
+		}
+		length = accepted;
+		return true;
+	}
+
+	/*package*/ char[] array() {
+		return chars;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if(index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException();
+		}
+		return chars[index];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if(start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException();
+		}
+		return new String(chars, start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		return new String(chars, 0, length);
+	}
+
+}
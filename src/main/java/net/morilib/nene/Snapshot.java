@@ -0,0 +1,321 @@
+/*
+ * Nene
+ *
+ * Copyright (c) 2019 Yuichiro MORIGUCHI
+ *
+ * This software is released under the MIT License.
+ * http://opensource.org/licenses/mit-license.php
+ */
+package net.morilib.nene;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import net.morilib.automaton2.RegexParseException;
+import net.morilib.automaton2.RegexParser;
+import net.morilib.automaton2.SubsetDFA;
+
+/**
+ * A snapshot of compiled regular expressions which is stored to a file.<br>
+ * Each regular expression is stored as a DFA whose transitions are a table over classes of characters.
+ * A loaded snapshot maps the file and matches the tables in the mapped memory,
+ * so no object is created for states and the tables are not scanned by GC.
+ * While a snapshot is installed, regular expressions in the snapshot are not parsed when they are compiled.
+ * Actions of patterns are not stored, so patterns are built as usual.
+ */
+public final class Snapshot {
+
+	private static final int MAGIC = 0x4e454e45;
+	private static final int VERSION = 1;
+	private static final int LATIN = 256;
+
+	private static volatile Snapshot installed;
+
+	/*
+	 * A DFA stored in the snapshot.
+	 *
+	 * int states, int classes, int ranges
+	 * short[256] classes of Latin-1 characters
+	 * (char, short)[ranges] classes of other characters from the first character of each range
+	 * byte[states] accepted or not
+	 * int[states * classes] next state or -1 if dead
+	 */
+	/*package*/ static final class Table {
+
+		private final ByteBuffer buffer;
+		private final int classes;
+		private final int ranges;
+		private final int latin;
+		private final int rangeBase;
+		private final int accepts;
+		private final int transitions;
+
+		private Table(ByteBuffer buffer, int offset) {
+			int states = buffer.getInt(offset);
+
+			this.buffer = buffer;
+			this.classes = buffer.getInt(offset + 4);
+			this.ranges = buffer.getInt(offset + 8);
+			this.latin = offset + 12;
+			this.rangeBase = latin + LATIN * 2;
+			this.accepts = rangeBase + ranges * 4;
+			this.transitions = accepts + states;
+		}
+
+		private int classOf(int ch) {
+			int low = 0;
+			int high = ranges - 1;
+
+			if(ch < LATIN) {
+				return buffer.getShort(latin + ch * 2);
+			}
+			while(low < high) {
+				int mid = (low + high + 1) >>> 1;
+
+				if(buffer.getChar(rangeBase + mid * 4) <= ch) {
+					low = mid;
+				} else {
+					high = mid - 1;
+				}
+			}
+			return buffer.getShort(rangeBase + low * 4 + 2);
+		}
+
+		/*package*/ boolean accepts(int state) {
+			return buffer.get(accepts + state) != 0;
+		}
+
+		/*package*/ int next(int state, int ch) {
+			return buffer.getInt(transitions + (state * classes + classOf(ch)) * 4);
+		}
+
+		/*package*/ boolean scan(Sequence sequence, ScanBuffer scanned) throws IOException {
+			int state = 0;
+			int accepted = accepts(0) ? 0 : -1;
+
+			scanned.clear();
+			while(true) {
+				int ch = sequence.read();
+
+				if(ch < 0) {
+					break;
+				} else if((state = next(state, ch)) < 0) {
+					sequence.unread(ch);
+					break;
+				}
+				scanned.append((char)ch);
+				if(accepts(state)) {
+					accepted = scanned.length();
+				}
+			}
+			return scanned.accept(sequence, accepted);
+		}
+
+	}
+
+	private final Map<String, Table> tables;
+
+	private Snapshot(Map<String, Table> tables) {
+		this.tables = tables;
+	}
+
+	private static void writeTable(DataOutputStream output, String regex) throws IOException {
+		List<Predicate<Character>> charsets = new ArrayList<Predicate<Character>>();
+		List<Character> representatives = new ArrayList<Character>();
+		int[] classOf;
+		Map<SubsetDFA.State, Integer> stateIds = new IdentityHashMap<SubsetDFA.State, Integer>();
+		List<SubsetDFA.State> states = new ArrayList<SubsetDFA.State>();
+		List<Integer> ranges = new ArrayList<Integer>();
+		List<int[]> transitions = new ArrayList<int[]>();
+		SubsetDFA dfa;
+
+		try {
+			dfa = new SubsetDFA(RegexParser.parse(regex, charsets));
+		} catch(RegexParseException e) {
+			throw new NeneException("invalid regular expression: " + regex, e);
+		}
+
+		// characters which belong to the same sets make the same transitions
+		classOf = SubsetDFA.classes(charsets, representatives);
+		for(int ch = LATIN; ch < classOf.length; ch++) {
+			if(ch == LATIN || classOf[ch - 1] != classOf[ch]) {
+				ranges.add(ch);
+			}
+		}
+
+		stateIds.put(dfa.getStartState(), 0);
+		states.add(dfa.getStartState());
+		for(int i = 0; i < states.size(); i++) {
+			int[] row = new int[representatives.size()];
+
+			for(int c = 0; c < row.length; c++) {
+				SubsetDFA.State next = dfa.transit(states.get(i), representatives.get(c));
+				Integer id;
+
+				if(next.isDead()) {
+					row[c] = -1;
+				} else if((id = stateIds.get(next)) != null) {
+					row[c] = id;
+				} else {
+					stateIds.put(next, row[c] = states.size());
+					states.add(next);
+				}
+			}
+			transitions.add(row);
+		}
+
+		output.writeInt(states.size());
+		output.writeInt(representatives.size());
+		output.writeInt(ranges.size());
+		for(int ch = 0; ch < LATIN; ch++) {
+			output.writeShort(classOf[ch]);
+		}
+		for(int start : ranges) {
+			output.writeChar(start);
+			output.writeShort(classOf[start]);
+		}
+		for(SubsetDFA.State state : states) {
+			output.writeByte(state.isAccept() ? 1 : 0);
+		}
+		for(int[] row : transitions) {
+			for(int next : row) {
+				output.writeInt(next);
+			}
+		}
+	}
+
+	/**
+	 * compiles the given regular expressions and writes them to the given file.
+	 *
+	 * @param file file to write
+	 * @param regexes regular expressions
+	 * @throws IOException I/O exception
+	 */
+	public static void write(Path file, Collection<String> regexes) throws IOException {
+		ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+		DataOutputStream tableOutput = new DataOutputStream(tableBytes);
+		List<String> names = new ArrayList<String>(new LinkedHashSet<String>(regexes));
+		int[] offsets = new int[names.size()];
+		int headerSize = 12;
+
+		for(String regex : names) {
+			headerSize += 4 + regex.length() * 2 + 4;
+		}
+		for(int i = 0; i < names.size(); i++) {
+			offsets[i] = headerSize + tableOutput.size();
+			writeTable(tableOutput, names.get(i));
+		}
+
+		try(OutputStream stream = Files.newOutputStream(file);
+				DataOutputStream output = new DataOutputStream(stream)) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(names.size());
+			for(int i = 0; i < names.size(); i++) {
+				output.writeInt(names.get(i).length());
+				output.writeChars(names.get(i));
+				output.writeInt(offsets[i]);
+			}
+			tableOutput.flush();
+			tableBytes.writeTo(output);
+		}
+	}
+
+	/**
+	 * compiles regular expressions which are matched by the given builders and writes them to the given file.
+	 *
+	 * @param file file to write
+	 * @param builders builders
+	 * @throws IOException I/O exception
+	 */
+	public static void write(Path file, Nene.Builder<?>... builders) throws IOException {
+		Set<String> regexes = new LinkedHashSet<String>();
+
+		for(Nene.Builder<?> builder : builders) {
+			builder.node().optimize().regexes(regexes);
+		}
+		write(file, regexes);
+	}
+
+	/**
+	 * loads the snapshot by mapping the given file.
+	 *
+	 * @param file file to load
+	 * @return loaded snapshot
+	 * @throws IOException I/O exception
+	 * @throws NeneException if the file is not a snapshot
+	 */
+	public static Snapshot load(Path file) throws IOException {
+		Map<String, Table> tables = new HashMap<String, Table>();
+		ByteBuffer buffer;
+		int count;
+		int offset = 12;
+
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if(buffer.limit() < 12 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new NeneException("invalid snapshot");
+		}
+		count = buffer.getInt(8);
+		for(int i = 0; i < count; i++) {
+			char[] regex = new char[buffer.getInt(offset)];
+
+			offset += 4;
+			for(int j = 0; j < regex.length; j++, offset += 2) {
+				regex[j] = buffer.getChar(offset);
+			}
+			tables.put(new String(regex), new Table(buffer, buffer.getInt(offset)));
+			offset += 4;
+		}
+		return new Snapshot(tables);
+	}
+
+	/**
+	 * returns true if the given regular expression is in this snapshot.
+	 *
+	 * @param regex regular expression
+	 * @return true if the regular expression is in this snapshot
+	 */
+	public boolean contains(String regex) {
+		return tables.containsKey(regex);
+	}
+
+	/**
+	 * installs this snapshot, so that regular expressions in this snapshot are matched by this snapshot.
+	 */
+	public void install() {
+		installed = this;
+	}
+
+	/**
+	 * uninstalls the installed snapshot.
+	 */
+	public static void uninstall() {
+		installed = null;
+	}
+
+	/*package*/ static Table find(String regex) {
+		Snapshot snapshot = installed;
+
+		return snapshot != null ? snapshot.tables.get(regex) : null;
+	}
+
+}
@@ -8,7 +8,29 @@
  */
 package net.morilib.nene;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+import javax.management.ObjectName;
+
 import junit.framework.TestCase;
+import net.morilib.automaton2.RegexParseException;
+import net.morilib.automaton2.RegexParser;
+import net.morilib.automaton2.SubsetDFA;
 
 public class NeneTest extends TestCase {
 
@@ -151,4 +173,924 @@ public class NeneTest extends TestCase {
 		assertNull(n.letrec(a -> n.cond("<", n.then("<").then(a).then(">")).orElse(n.success)).match("<<<>>", 0.0));
 	}
 
+	public void testOptimize001() {
+		Nene<Double> n = new Nene<Double>();
+
+		assertEquals(n.then("765").then("pro").toString(), "regex(765pro)");
+		assertEquals(n.then("7").then(n.then("6").then("5*")).toString(), "regex(7(6(5*)))");
+		assertEquals(n.then("7").then(n.then("6").then("5*")).match("76555a", 0.0).index, 5);
+		assertNull(n.then("7").then(n.then("6").then("5*")).match("75", 0.0));
+		assertEquals(n.then("a*").then("b").toString(), "seq(regex(a*), regex(b))");
+		assertEquals(n.then("a").then(n.fail).then("b").toString(), "seq(regex(a), fail)");
+	}
+
+	public void testOptimize003() {
+		Nene<Double> n = new Nene<Double>();
+		Nene<Double> i = new Nene<Double>().caseInsensitive(true);
+
+		assertEquals(i.then("if").then("[a-z]*").toString(), "regex((?i)if([a-z]*))");
+		assertEquals(i.then("if").then("[a-z]*").match("IFa", 0.0).index, 3);
+		assertEquals(i.then("end").then("if").toString(), "regex((?i)endif)");
+		assertEquals(n.then("-").then("(?i)x+").toString(), "regex((?i)-(x+))");
+		assertEquals(n.then("-").then("(?i)x+").match("-XxY", 0.0).index, 3);
+		assertEquals(n.then("(?i)x").then("12").toString(), "regex((?i)x12)");
+		assertEquals(n.then("a").then("(?i)b").toString(), "seq(regex(a), regex((?i)b))");
+		assertNull(n.then("a").then("(?i)b").match("AB", 0.0));
+		assertEquals(n.then("(?i)a").then("b").toString(), "seq(regex((?i)a), regex(b))");
+	}
+
+	public void testOptimize002() {
+		Nene<Double> n = new Nene<Double>();
+
+		assertEquals(n.zeroOrMore("27").toString(), "loop(0, -1, regex(27))");
+		assertEquals(n.times(0, 0, "27").toString(), "success");
+		assertEquals(n.cond("765", "765pro").orElse("765", "7650").orElse("27", "27").toString(),
+				"choice(765 -> regex(765pro), 27 -> regex(27), else -> fail)");
+		assertEquals(n.times(2, 3, "27").match("2727272727", 0.0).index, 6);
+		assertNull(n.times(2, 3, "27").match("2728", 0.0));
+	}
+
+	public void testAction001() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> digits = n.zeroOrMore(n.action("[0-9]", (x, y) -> y * 10 + Double.parseDouble(x)));
+
+		assertEquals(digits.match("765", 0.0).attr, 765.0);
+		assertEquals(n.then("<").then(n.action(digits, (x, y) -> x + y)).then(">").match("<765>", 1.0).index, 5);
+		assertEquals(n.then("<").then(n.action(digits, (x, y) -> x + y)).then(">").match("<765>", 1.0).attr, 1766.0);
+	}
+
+	public void testLetrec002() throws Exception {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> nest = n.letrec(a -> n.cond("<", n.then("<").then(a).then(">")).orElse(n.success));
+		StringBuilder b = new StringBuilder();
+		List<Integer> result = new ArrayList<Integer>();
+		Thread thread;
+
+		for(int i = 0; i < 100000; i++) {
+			b.insert(0, '<').append('>');
+		}
+		thread = new Thread(null, () -> result.add(nest.match(b.toString(), 0.0).index), "nest", 256L * 1024 * 1024);
+		thread.start();
+		thread.join();
+		assertEquals(result, Arrays.asList(200000));
+
+		thread = new Thread(null, () -> {
+			try {
+				nest.match(b.toString(), 0.0);
+			} catch(NeneException e) {
+				result.add(-1);
+			}
+		}, "nest", 256L * 1024);
+		thread.start();
+		thread.join();
+		assertEquals(result, Arrays.asList(200000, -1));
+	}
+
+	public void testLetrec003() {
+		Nene<Double> n = new Nene<Double>().nestingLimit(3);
+
+		assertEquals(n.letrec(a -> n.cond("<", n.then("<").then(a).then(">")).orElse(n.success)).match("<<>>", 0.0).index, 4);
+		try {
+			n.letrec(a -> n.cond("<", n.then("<").then(a).then(">")).orElse(n.success)).match("<<<<>>>>", 0.0);
+			fail();
+		} catch(NeneException e) {
+			// ok
+		}
+	}
+
+	public void testLetrec004() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> nest = n.letrec(a -> n.cond("<", n.then("<").then(a).then(">"))
+				.orElse(n.zeroOrMore(n.then("[\\[]").then(a).then("[\\]]"))));
+		StringBuilder b = new StringBuilder();
+
+		for(int i = 0; i < 127; i++) {
+			b.insert(0, '<').append('>');
+		}
+		for(int i = 0; i < 1000; i++) {
+			b.insert(127, "[]");
+		}
+		assertEquals(nest.match(b.toString(), 0.0).index, 2254);
+		assertEquals(nest.match(b.toString(), 0.0).index, 2254);
+	}
+
+	public void testOperators001() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> expr = n.operators(n.action("[0-9]+", (x, y) -> Double.parseDouble(x)))
+				.infixLeft("[+]", 1, (x, y) -> x + y)
+				.infixLeft("-", 1, (x, y) -> x - y)
+				.infixLeft("[*]", 2, (x, y) -> x * y)
+				.infixLeft("/", 2, (x, y) -> x / y)
+				.infixRight("^", 4, (x, y) -> Math.pow(x, y))
+				.prefix("-", 3, x -> -x)
+				.postfix("!", 5, x -> x * (x - 1));
+
+		assertEquals(expr.match("1+2*3", 0.0).attr, 7.0);
+		assertEquals(expr.match("1+2*3", 0.0).index, 5);
+		assertEquals(expr.match("8-3-2", 0.0).attr, 3.0);
+		assertEquals(expr.match("2^3^2", 0.0).attr, 512.0);
+		assertEquals(expr.match("-2^2", 0.0).attr, -4.0);
+		assertEquals(expr.match("-2*3", 0.0).attr, -6.0);
+		assertEquals(expr.match("3!+1", 0.0).attr, 7.0);
+		assertEquals(expr.match("27", 0.0).attr, 27.0);
+		assertNull(expr.match("1+", 0.0));
+		assertNull(expr.match("", 0.0));
+	}
+
+	public void testOperators002() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> expr = n.letrec(e -> n.operators(
+				n.cond("[(]", n.then("[(]").then(e).then("[)]")).orElse(n.action("[0-9]+", (x, y) -> Double.parseDouble(x))))
+				.infixLeft("[+]", 1, (x, y) -> x + y)
+				.infixLeft("[*]", 2, (x, y) -> x * y));
+
+		assertEquals(expr.match("(1+2)*3", 0.0).attr, 9.0);
+		assertEquals(expr.match("2*(1+(2+3)*2)", 0.0).attr, 22.0);
+	}
+
+	public void testOperators003() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.OperatorBuilder<Double> expr = n.operators(n.action("[0-9]+", (x, y) -> Double.parseDouble(x)));
+
+		try {
+			expr.infixLeft("-*", 1, (x, y) -> x - y);
+			fail();
+		} catch(NeneException e) {
+			// ok
+		}
+		try {
+			expr.prefix("(-)*", 1, x -> -x);
+			fail();
+		} catch(NeneException e) {
+			// ok
+		}
+		assertEquals(expr.infixLeft("-+", 1, (x, y) -> x - y).match("8--3", 0.0).attr, 5.0);
+		expr.infixLeft("((", 2, (x, y) -> x * y);
+		try {
+			expr.match("8--3", 0.0);
+			fail();
+		} catch(NeneException e) {
+			// a syntax error is thrown when the operators are matched
+		}
+	}
+
+	public void testNeneDouble001() {
+		NeneDouble n = new NeneDouble();
+		Nene.Builder<Double> expr = n.letrec(e -> n.operatorsAsDouble(
+				n.cond("[(]", n.then("[(]").then(e).then("[)]")).orElse(n.actionAsDouble("[0-9]+", (x, y) -> Double.parseDouble(x.toString()))))
+				.infixLeft("[+]", 1, (x, y) -> x + y)
+				.infixLeft("-", 1, (x, y) -> x - y)
+				.infixLeft("[*]", 2, (x, y) -> x * y)
+				.prefix("-", 3, x -> -x));
+
+		assertEquals(n.match(expr, "(1+2)*3", 0.0).attr, 9.0, 0.0);
+		assertEquals(n.match(expr, "-2*(1+(2-3)*2)", 0.0).attr, 2.0, 0.0);
+		assertEquals(n.match(expr, "-2*(1+(2-3)*2)", 0.0).index, 14);
+		assertEquals(expr.match("(1+2)*3", 0.0).attr, 9.0);
+		assertNull(n.match(expr, "(1+2", 0.0));
+	}
+
+	public void testNeneDouble002() {
+		NeneDouble n = new NeneDouble();
+		Nene.Builder<Double> digits = n.zeroOrMore(n.action("[0-9]", (x, y) -> y * 10 + Double.parseDouble(x)));
+
+		assertEquals(n.match(n.actionAsDouble(digits, (x, y) -> x + y), "765", 1.0).attr, 1766.0, 0.0);
+	}
+
+	public void testNeneLong001() {
+		NeneLong n = new NeneLong();
+		Nene.Builder<Long> expr = n.operatorsAsLong(n.actionAsLong("[0-9]+", (x, y) -> Long.parseLong(x, 0, x.length(), 10)))
+				.infixLeft("[+]", 1, (x, y) -> x + y)
+				.infixLeft("[*]", 2, (x, y) -> x * y)
+				.infixRight("^", 3, (x, y) -> (long)Math.pow(x, y))
+				.postfix("!", 4, x -> x * (x - 1));
+
+		assertEquals(n.match(expr, "1+2*3", 0).attr, 7);
+		assertEquals(n.match(expr, "2^3^2", 0).attr, 512);
+		assertEquals(n.match(expr, "3!*2", 0).attr, 12);
+	}
+
+	public void testSpanAction001() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> digits = n.zeroOrMore(n.spanAction("[0-9]", (x, y) -> y * 10 + (x.charAt(0) - '0')));
+		Nene.Builder<Double> length = n.then("<").then(n.spanAction("[a-z]+", (x, y) -> (double)x.length())).then(">");
+
+		assertEquals(digits.match("765", 0.0).attr, 765.0);
+		assertEquals(length.match("<abcd>", 0.0).attr, 4.0);
+		assertNull(length.match("<abcd", 0.0));
+	}
+
+	public void testOffsetAction001() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> b = n.then("765").then(n.offsetAction("pro+", (s, e, y) -> y + s * 100 + e));
+
+		assertEquals(b.match("765proooo", 0.0).attr, 309.0);
+		assertEquals(b.match("765proooo", 0.0).index, 9);
+	}
+
+	public void testLexer001() throws Exception {
+		Lexer lexer = new Lexer().skip(" +").rule("if", 1).rule("[a-z]+", 2).rule("[0-9]+", 3).rule("=", 4).rule("==", 5);
+		Lexer.Tokens tokens = lexer.tokens(new StringReader("if iff x == 765 "));
+
+		assertTrue(tokens.next());
+		assertEquals(tokens.type(), 1);
+		assertEquals(tokens.text().toString(), "if");
+		assertTrue(tokens.next());
+		assertEquals(tokens.type(), 2);
+		assertEquals(tokens.text().toString(), "iff");
+		assertTrue(tokens.next());
+		assertEquals(tokens.type(), 2);
+		assertTrue(tokens.next());
+		assertEquals(tokens.type(), 5);
+		assertEquals(tokens.start(), 9);
+		assertEquals(tokens.end(), 11);
+		assertTrue(tokens.next());
+		assertEquals(tokens.type(), 3);
+		assertEquals(tokens.text().toString(), "765");
+		assertFalse(tokens.next());
+	}
+
+	public void testLexer002() {
+		Lexer lexer = new Lexer().skip(" +").rule("[a-z]+", 1).rule("[0-9]+", 2).rule("==", 3);
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> b = n.tokens(lexer)
+				.on(2, (x, y) -> Double.valueOf(x.toString()), n.success)
+				.on(1, (x, y) -> -1.0, n.token(lexer, 3));
+		Nene.Builder<Double> c = n.then("<").then(n.token(lexer, 1)).then(n.token(lexer, 2, (x, y) -> (double)x.length())).then(">");
+
+		assertEquals(b.match(" 765", 0.0).attr, 765.0);
+		assertEquals(b.match(" 765", 0.0).index, 4);
+		assertEquals(b.match("abc ==", 0.0).attr, -1.0);
+		assertEquals(b.match("abc ==", 0.0).index, 6);
+		assertNull(b.match("abc", 0.0));
+		assertNull(b.match("==", 0.0));
+		assertEquals(c.match("< abc 765>", 0.0).attr, 3.0);
+		assertNull(c.match("< abc abc>", 0.0));
+	}
+
+	public void testLexer003() {
+		Lexer lexer = new Lexer().skip(" +").rule("[a-z]+", 1);
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> b = n.tokens(lexer)
+				.on(1, (x, y) -> 1.0, n.success)
+				.orElse(n.then(n.skip("[ ]")).then("[0-9]+"));
+		StringBuilder padding = new StringBuilder();
+
+		for(int i = 0; i < 3000; i++) {
+			padding.append(' ');
+		}
+		assertEquals(b.match(padding + "abc", 0.0).attr, 1.0);
+		assertEquals(b.match(padding + "765", 0.0).index, 3003);
+		assertNull(b.match(padding + "<>", 0.0));
+	}
+
+	public void testSkip001() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> b = n.then("<").then(n.skip("[ \t]")).then(n.scanWhile("[0-9]", (x, y) -> Double.valueOf(x.toString()))).then(">");
+		StringBuilder padding = new StringBuilder("<");
+
+		for(int i = 0; i < 1000; i++) {
+			padding.append(i % 2 == 0 ? ' ' : '\t');
+		}
+		assertEquals(b.match("<765>", 0.0).attr, 765.0);
+		assertEquals(b.match("< \t 765>", 0.0).attr, 765.0);
+		assertEquals(b.match(padding + "346>", 0.0).attr, 346.0);
+		assertEquals(b.match(padding + "346>", 0.0).index, 1005);
+		assertNull(b.match("< 765a>", 0.0));
+	}
+
+	public void testSkip002() {
+		Nene<Double> n = new Nene<Double>().caseInsensitive(true);
+		Nene.Builder<Double> b = n.then(n.skip("[a-c]")).then(">");
+		Nene.Builder<Double> c = n.then(n.zeroOrMore("[a-c]")).then(">");
+
+		assertEquals(b.match("aBc>", 0.0).index, 4);
+		assertEquals(c.match("aBc>", 0.0).index, 4);
+		assertEquals(n.skip("[\\]]").match("]]", 0.0).index, 2);
+		try {
+			n.skip("a");
+			fail();
+		} catch(NeneException e) {
+			assertEquals(e.getMessage(), "invalid set of characters: (?i)a");
+			assertTrue(e.getCause() instanceof RegexParseException);
+		}
+		try {
+			n.skip("[z-a]");
+			fail();
+		} catch(NeneException e) {
+			assertTrue(e.getCause().getCause() instanceof PatternSyntaxException);
+		}
+	}
+
+	public void testScanUntil001() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> b = n.then("<").then(n.scanUntil("[>]", (x, y) -> (double)x.length())).then(">");
+		Nene.Builder<Double> c = n.then("<").then(n.scanUntil("[>\u3042]")).then("\u3042");
+
+		assertEquals(b.match("<765pro>", 0.0).attr, 6.0);
+		assertEquals(b.match("<>", 0.0).attr, 0.0);
+		assertNull(b.match("<765pro", 0.0));
+		assertEquals(c.match("<765\u3042", 0.0).index, 5);
+	}
+
+	public void testProfiler001() {
+		Profiler profiler = new Profiler();
+		Nene<Double> n = new Nene<Double>().profiler(profiler);
+		Nene.Builder<Double> digit = n.named("digit", n.then("[0-9]"));
+		Nene.Builder<Double> b = n.named("list", n.then("<").then(n.zeroOrMore(digit)).then(">"));
+
+		assertEquals(b.match("<765>", 0.0).index, 5);
+		assertNull(b.match("<76a>", 0.0));
+		assertEquals(profiler.entries().size(), 2);
+		for(Profiler.Entry entry : profiler.entries()) {
+			if(entry.getName().equals("digit")) {
+				assertEquals(entry.getInvocations(), 7);
+				assertEquals(entry.getSuccesses(), 5);
+				assertEquals(entry.getFailures(), 2);
+				assertEquals(entry.getScanned(), 5);
+			} else {
+				assertEquals(entry.getInvocations(), 2);
+				assertEquals(entry.getSuccesses(), 1);
+				assertEquals(entry.getScanned(), 5);
+				assertTrue(entry.getInclusiveNanos() >= entry.getExclusiveNanos());
+			}
+		}
+		assertTrue(profiler.report().contains("digit"));
+		profiler.reset();
+		assertEquals(profiler.entries().get(0).getInvocations(), 0);
+	}
+
+	public void testProfiler002() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> b = n.then("765");
+
+		assertSame(n.named("b", b), b);
+	}
+
+	public void testMetrics001() throws Exception {
+		NeneMetrics metrics = new NeneMetrics().register("net.morilib.nene:type=NeneMetrics,name=test");
+		Nene<Double> n = new Nene<Double>().metrics(metrics);
+		Nene.Builder<Double> b = n.cond("76", "765").orElse("7", "7");
+
+		try {
+			assertEquals(b.match("765", 0.0).index, 3);
+			assertEquals(b.match("7", 0.0).index, 1);
+			assertNull(b.match("961", 0.0));
+			assertEquals(metrics.getMatches(), 3);
+			assertEquals(metrics.getFailures(), 1);
+			assertEquals(metrics.getCharactersConsumed(), 4);
+			assertEquals(metrics.getCharactersReread(), 4);
+			assertEquals(ManagementFactory.getPlatformMBeanServer().getAttribute(
+					new ObjectName("net.morilib.nene:type=NeneMetrics,name=test"), "Matches"), 3L);
+			metrics.reset();
+			assertEquals(metrics.getMatches(), 0);
+		} finally {
+			NeneMetrics.unregister("net.morilib.nene:type=NeneMetrics,name=test");
+		}
+	}
+
+	private static String repeat(char ch, int count) {
+		StringBuilder builder = new StringBuilder();
+
+		for(int i = 0; i < count; i++) {
+			builder.append(ch);
+		}
+		return builder.toString();
+	}
+
+	private static Reader endless() {
+		return new Reader() {
+
+			@Override
+			public int read(char[] cbuf, int off, int len) {
+				Arrays.fill(cbuf, off, off + len, 'a');
+				return len;
+			}
+
+			@Override
+			public void close() {
+				// nothing to do
+			}
+
+		};
+	}
+
+	public void testBudget001() {
+		Nene<Double> n = new Nene<Double>().stepLimit(10000);
+		Nene.Builder<Double> b = n.zeroOrMore("a");
+
+		assertEquals(b.match(repeat('a', 9999), 0.0).index, 9999);
+		try {
+			b.match(repeat('a', 10001), 0.0);
+			fail();
+		} catch(BudgetExceededException e) {
+			assertEquals(e.getKind(), BudgetExceededException.Kind.STEPS);
+		}
+	}
+
+	public void testBudget002() {
+		Nene<Double> n = new Nene<Double>().rereadLimit(10000);
+		Nene.Builder<Double> b = n.zeroOrMore(n.cond("a", "a"));
+
+		assertEquals(b.match(repeat('a', 5000), 0.0).index, 5000);
+		try {
+			b.match(repeat('a', 20000), 0.0);
+			fail();
+		} catch(BudgetExceededException e) {
+			assertEquals(e.getKind(), BudgetExceededException.Kind.REREAD);
+		}
+	}
+
+	public void testBudget003() throws IOException {
+		Nene<Double> n = new Nene<Double>().timeLimit(100);
+
+		try {
+			n.zeroOrMore("a").match(endless(), 0.0);
+			fail();
+		} catch(BudgetExceededException e) {
+			assertEquals(e.getKind(), BudgetExceededException.Kind.TIME);
+		}
+	}
+
+	public void testBudget004() throws IOException {
+		Nene<Double> n = new Nene<Double>().interruptible(true);
+
+		Thread.currentThread().interrupt();
+		try {
+			n.zeroOrMore("a").match(endless(), 0.0);
+			fail();
+		} catch(BudgetExceededException e) {
+			assertEquals(e.getKind(), BudgetExceededException.Kind.INTERRUPTED);
+		} finally {
+			Thread.interrupted();
+		}
+	}
+
+	public void testSnapshot001() throws Exception {
+		Path file = Files.createTempFile("nene", ".snapshot");
+		String[] regexes = { "765", "[0-9]+", "(if|iff|then)+", "a*b", "[\\u3040-\\u309f]+x", "." };
+		String[] inputs = { "765pro", "961a", "iffifthen", "aaab", "aaa", "\u3042\u3044x", "\u3042", "", "x" };
+
+		try {
+			Snapshot.write(file, Arrays.asList(regexes));
+			Snapshot snapshot = Snapshot.load(file);
+
+			for(String regex : regexes) {
+				RegexMatcher expected = new RegexMatcher(regex);
+
+				assertTrue(snapshot.contains(regex));
+				snapshot.install();
+				try {
+					RegexMatcher actual = Nene.compileRegex(regex);
+
+					for(String input : inputs) {
+						ConditionResult x = expected.run(new Nene<Void>().newMatchInfo(new StringReader(input)).match);
+						ConditionResult y = actual.run(new Nene<Void>().newMatchInfo(new StringReader(input)).match);
+
+						assertEquals(y.matched, x.matched);
+						assertEquals(y.scanned, x.scanned);
+					}
+				} finally {
+					Snapshot.uninstall();
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	public void testSnapshot002() throws Exception {
+		Path file = Files.createTempFile("nene", ".snapshot");
+		Nene<Double> n = new Nene<Double>();
+
+		try {
+			Snapshot.write(file, n.then("<").then(n.action("[0-9]+", (x, y) -> Double.valueOf(x))).then(">"));
+			Snapshot.load(file).install();
+			Nene.Builder<Double> b = n.then("<").then(n.action("[0-9]+", (x, y) -> Double.valueOf(x))).then(">");
+
+			assertTrue(Snapshot.find("[0-9]+") != null);
+			assertEquals(b.match("<765>", 0.0).attr, 765.0);
+			assertNull(b.match("<765", 0.0));
+		} finally {
+			Snapshot.uninstall();
+			Files.delete(file);
+		}
+	}
+
+	public void testMatchBatch001() throws Exception {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> b = n.then("<").then(n.action("[0-9]+", (x, y) -> Double.valueOf(x))).then(">");
+		List<String> inputs = new ArrayList<String>();
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+
+		for(int i = 0; i < 1000; i++) {
+			inputs.add(i % 7 == 0 ? "<" + i : "<" + i + ">");
+		}
+		try {
+			for(List<Nene.Result<Double>> results : Arrays.asList(
+					n.matchBatch(b, inputs, 0.0),
+					n.matchBatch(b, inputs, 0.0, executor, 3),
+					Arrays.asList(n.matchBatch(b, inputs.toArray(new CharSequence[0]), 0.0)))) {
+				assertEquals(results.size(), 1000);
+				for(int i = 0; i < 1000; i++) {
+					if(i % 7 == 0) {
+						assertNull(results.get(i));
+					} else {
+						assertEquals(results.get(i).attr, (double)i);
+						assertEquals(results.get(i).index, inputs.get(i).length());
+					}
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testMatchBatch002() {
+		Nene<Double> n = new Nene<Double>().stepLimit(10);
+		Nene.Builder<Double> b = n.zeroOrMore("a");
+
+		assertEquals(n.matchBatch(b, Arrays.asList("aaa", ""), 0.0).get(0).index, 3);
+		try {
+			n.matchBatch(b, Arrays.asList("aaa", "aaaaaaaaaaaaaaaaaaaa"), 0.0);
+			fail();
+		} catch(BudgetExceededException e) {
+			assertEquals(e.getKind(), BudgetExceededException.Kind.STEPS);
+		}
+	}
+
+	public void testLastAccept001() {
+		Nene<Double> n = new Nene<Double>();
+		StringBuilder input = new StringBuilder("x");
+
+		for(int i = 0; i < 500; i++) {
+			input.append('a');
+		}
+		assertEquals(n.then("ab|abcd").then("ce").match("abce", 0.0).index, 4);
+		assertEquals(n.then("(ab)+").then("a").match("ababa", 0.0).index, 5);
+		assertEquals(n.then("x|xa*b").match(input + "c", 0.0).index, 1);
+		assertEquals(n.then("x|xa*b").then("a*c").match(input + "c", 0.0).index, 502);
+		assertNull(n.then("xa*b").match(input + "c", 0.0));
+	}
+
+	public void testFind001() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> record = n.then("<").then(n.skipTo("REC:[0-9]+")).then(n.action("REC:[0-9]+", (x, y) -> Double.valueOf(x.substring(4))));
+
+		assertEquals(record.match("<noise # REC: REC:765 tail", 0.0).index, 21);
+		assertEquals(record.match("<noise # REC: REC:765 tail", 0.0).attr, 765.0);
+		assertEquals(n.then("a").then(n.find("ab+c")).then("d").match("aabxabbcd", 0.0).index, 9);
+		assertEquals(n.skipTo("a*").match("bbb", 0.0).index, 0);
+		assertNull(n.find("ab+c").match("aabxabbd", 0.0));
+		assertNull(n.skipTo("x").match("", 0.0));
+		assertEquals(n.zeroOrMore(n.then("[a-z]").then(n.skipTo("[0-9]")).then(n.action("[0-9]+", (x, y) -> y + 1))).match("a1b22c333d", 0.0).attr, 3.0);
+	}
+
+	public void testFind002() {
+		Nene<Double> n = new Nene<Double>();
+		StringBuilder b = new StringBuilder();
+
+		for(int i = 0; i < 900; i++) {
+			b.append(i % 300 == 299 ? 'c' : 'a');
+		}
+		assertEquals(n.find("a*b").match(b + "ab", 0.0).index, 902);
+		assertEquals(n.skipTo("a*b").match(b + "ab", 0.0).index, 900);
+		assertNull(n.find("a*b").match(b.toString(), 0.0));
+		assertEquals(n.then(n.find("(?i)X")).then("y").match(b + "xy", 0.0).index, 902);
+	}
+
+	public void testSearch001() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> record = n.action("REC:[0-9]+", (x, y) -> Double.valueOf(x.substring(4)));
+		Nene.SearchResult<Double> result;
+
+		result = record.search("noise # REC: REC:765 tail", 0.0);
+		assertEquals(result.start, 13);
+		assertEquals(result.index, 20);
+		assertEquals(result.attr, 765.0);
+		result = record.search("noise # REC: REC:765 tail REC:346", 20, 0.0);
+		assertEquals(result.start, 26);
+		assertEquals(result.attr, 346.0);
+		assertNull(record.search("noise # REC: tail", 0.0));
+		assertEquals(n.then("[0-9]+").then("x").search("12 34x", 0.0).start, 3);
+		assertEquals(n.then("a*").search("bbb", 1, 0.0).start, 1);
+		assertEquals(n.then("a*").then("$").search("bb$", 0.0).start, 2);
+	}
+
+	public void testSearch002() {
+		Nene<Double> n = new Nene<Double>();
+		StringBuilder b = new StringBuilder();
+
+		for(int i = 0; i < 100000; i++) {
+			b.append('a');
+		}
+		assertNull(n.then("a*b").search(b, 0.0));
+		assertEquals(n.then("a*b").search(b + "b", 0.0).start, 0);
+		assertEquals(n.then("a*b").then(",").search("aab,ab", 1, 0.0).start, 1);
+		assertNull(n.then("a*b").then(",").search("aab,ab", 3, 0.0));
+	}
+
+	public void testSearch003() {
+		Nene<Double> n = new Nene<Double>().lineIndex(true);
+		Nene.Builder<Double> record = n.then("\n*").then(n.action("REC:[0-9]+", (x, y) -> y + Double.valueOf(x.substring(4))));
+		Nene.SearchResult<Double> result;
+
+		result = record.search("ab\ncd\n\nREC:7\nREC:65", 1.0);
+		assertEquals(result.start, 5);
+		assertEquals(result.index, 12);
+		assertEquals(result.attr, 8.0);
+		assertEquals(result.lines.lineOf(result.start), 2);
+		assertEquals(result.lines.lineOf(8), 4);
+		assertEquals(result.lines.columnOf(11), 5);
+		assertNull(new Nene<Double>().then("a").search("ba", 0.0).lines);
+	}
+
+	public void testLiteralPrefix001() {
+		assertEquals(Prefilter.literalPrefix("REC:[0-9]+"), "REC:");
+		assertEquals(Prefilter.literalPrefix("abc*"), "ab");
+		assertEquals(Prefilter.literalPrefix("ab+"), "ab");
+		assertEquals(Prefilter.literalPrefix("ab|cd"), "");
+		assertEquals(Prefilter.literalPrefix("(ab)c"), "");
+	}
+
+	public void testWarmUp001() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> b = n.then("a+").then(n.cond("b", "b+").orElse("c"));
+		Nene.Builder<Double> c = n.captureAction("(a+)d", (x, y) -> y + x.end(1));
+		Nene.Builder<Double> bad = n.then("(a");
+
+		try {
+			bad.match("a", 0.0);
+			fail();
+		} catch(NeneException e) {
+			// ok
+		}
+		b.build();
+		assertFalse(RegexMatcher.pending().isEmpty());
+		for(int i = 0; i < 2; i++) {
+			try {
+				Nene.warmUp();
+				fail();
+			} catch(NeneException e) {
+				assertTrue(e.getMessage().startsWith("invalid regular expression: "));
+			}
+		}
+		// only regular expressions which have syntax errors are left
+		assertFalse(RegexMatcher.pending().isEmpty());
+		for(Compilable matcher : RegexMatcher.pending()) {
+			try {
+				matcher.compile();
+				fail();
+			} catch(NeneException e) {
+				// ok
+			}
+		}
+		// keeps the regular expression which has a syntax error reachable until here
+		assertNotNull(bad);
+		assertEquals(b.match("aabb", 0.0).index, 4);
+		assertEquals(b.match("ac", 0.0).index, 2);
+		assertEquals(c.match("aad", 0.0).attr, 2.0);
+	}
+
+	public void testCollect001() {
+		Nene<Object> n = new Nene<Object>();
+		Nene.Builder<Object> item = n.action("[0-9]+,", (x, y) -> Integer.valueOf(x.substring(0, x.length() - 1)));
+		Nene.Builder<Object> list = n.then("<").then(n.collect(item, Collectors.toList())).then(">");
+		Nene.Builder<Object> pair = n.then("<").then(n.collect(2, 2, item, Collectors.toList())).then(">");
+		StringBuilder large = new StringBuilder("<");
+
+		for(int i = 0; i < 100000; i++) {
+			large.append(i).append(',');
+		}
+		assertEquals(list.match("<1,22,333,>", null).attr, Arrays.asList(1, 22, 333));
+		assertEquals(list.match("<>", null).attr, Collections.emptyList());
+		assertEquals(((List<?>)list.match(large + ">", null).attr).size(), 100000);
+		assertEquals(((List<?>)list.match(large + ">", null).attr).get(99999), 99999);
+		assertNull(pair.match("<1,>", null));
+		assertEquals(pair.match("<1,2,>", null).attr, Arrays.asList(1, 2));
+	}
+
+	public void testCollect002() {
+		NeneDouble n = new NeneDouble();
+		Nene.Builder<Double> sum = n.collect(n.action("[0-9]+ *", (x, y) -> Double.valueOf(x.trim())),
+				Collectors.summingDouble(x -> x));
+		Nene.Builder<Double> row = n.then("r").then(n.collect(n.action("[0-9]", (x, y) -> y + Double.valueOf(x)),
+				Collectors.summingDouble(x -> x))).then(";");
+
+		assertEquals(sum.match("1 22 333", 0.0).attr, 356.0);
+		assertEquals(n.then("x").then(n.collect(row, Collectors.averagingDouble(x -> x))).match("xr12;r3;", 10.0).attr, 18.0);
+	}
+
+	public void testProgress001() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> empty = n.then((match, index, attr) -> new Nene.Result<Double>(index, attr + 1));
+
+		for(Supplier<Nene.Builder<Double>> b : Arrays.<Supplier<Nene.Builder<Double>>>asList(
+				() -> n.zeroOrMore(n.success),
+				() -> n.zeroOrMore(n.maybe("x")),
+				() -> n.oneOrMore("a*"),
+				() -> n.zeroOrMore(n.skip("[ ]")),
+				() -> n.collect(n.maybe("x"), Collectors.summingDouble(x -> x)))) {
+			try {
+				b.get();
+				fail();
+			} catch(NeneException e) {
+				assertTrue(e.getMessage().startsWith("repetition of empty pattern"));
+			}
+		}
+		assertEquals(n.zeroOrMore(n.then("a").then(n.skip("[ ]"))).match("a a  ab", 0.0).index, 6);
+		assertEquals(n.times(3, 3, n.maybe("x")).match("x", 0.0).index, 1);
+		assertEquals(n.zeroOrMore(empty).match("xx", 0.0).index, 0);
+		assertEquals(n.zeroOrMore(empty).match("xx", 0.0).attr, 1.0);
+		assertEquals(n.times(3, -1, empty).match("xx", 0.0).attr, 3.0);
+		assertEquals(n.collect(2, -1, empty, Collectors.summingDouble(x -> x)).match("", 0.0).attr, 2.0);
+	}
+
+	public void testProgress002() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.Builder<Double> b = n.then("<").then(n.zeroOrMore("((")).then(">");
+
+		assertFalse(RegexMatcher.nullable("(("));
+		assertTrue(RegexMatcher.nullable("(a|b*)(c*)"));
+		assertFalse(RegexMatcher.nullable("(a|b*)(c+)"));
+		try {
+			b.match("<>", 0.0);
+			fail();
+		} catch(NeneException e) {
+			// a syntax error is thrown when the regular expression is matched
+		}
+		try {
+			n.zeroOrMore(n.then("x*").then("(a|b)*"));
+			fail();
+		} catch(NeneException e) {
+			assertTrue(e.getMessage().startsWith("repetition of empty pattern"));
+		}
+	}
+
+	public void testLineIndex001() {
+		Nene<Double> n = new Nene<Double>().lineIndex(true);
+		NeneLong l = new NeneLong().lineIndex(true);
+		Nene.Builder<Double> b = n.zeroOrMore(n.then("[a-z]+").then(n.skip("[ \n]")));
+		Nene.Result<Double> result = b.match("ab cd\nef\n\ngh ij", 0.0);
+
+		assertEquals(result.index, 15);
+		assertEquals(result.lines.lines(), 4);
+		assertEquals(result.lines.lineOf(0), 1);
+		assertEquals(result.lines.columnOf(0), 1);
+		assertEquals(result.lines.lineOf(5), 1);
+		assertEquals(result.lines.columnOf(5), 6);
+		assertEquals(result.lines.lineOf(6), 2);
+		assertEquals(result.lines.columnOf(7), 2);
+		assertEquals(result.lines.lineOf(9), 3);
+		assertEquals(result.lines.lineOf(10), 4);
+		assertEquals(result.lines.columnOf(13), 4);
+		assertNull(new Nene<Double>().then("a").match("a", 0.0).lines);
+		assertEquals(l.match(l.then("a\n\n").then("a"), "a\n\na", 0).lines.lineOf(3), 3);
+	}
+
+	public void testCaseInsensitive001() throws IOException {
+		Nene<Double> n = new Nene<Double>();
+		Nene<Double> m = new Nene<Double>().caseInsensitive(true);
+		Lexer.Tokens tokens = new Lexer().rule("(?i)select", 1).rule("[a-z]+", 2).skip(" +").tokens(new StringReader("SELECT name"));
+
+		assertEquals(n.then("(?i)select").match("SeLeCt", 0.0).index, 6);
+		assertNull(n.then("select").match("SeLeCt", 0.0));
+		assertEquals(n.then("(?i)[a-c]+x").match("aBcAX", 0.0).index, 5);
+		assertEquals(n.then("sel").then("(?i)ect").match("selECT", 0.0).index, 6);
+		assertNull(n.then("sel").then("(?i)ect").match("SELECT", 0.0));
+		assertEquals(m.then("select").then(" +").then("[a-z]+").match("SELECT Name", 0.0).index, 11);
+		assertEquals(m.cond("from", "from").orElse("where", "where").match("WHERE", 0.0).index, 5);
+		assertEquals(m.action("[0-9]+x", (x, y) -> Double.valueOf(x.substring(0, x.length() - 1))).match("12X", 0.0).attr, 12.0);
+		assertEquals(n.then("(?i)\u00e9t\u00e9").match("\u00c9T\u00c9", 0.0).index, 3);
+		assertTrue(tokens.next());
+		assertEquals(tokens.type(), 1);
+		assertTrue(tokens.next());
+		assertEquals(tokens.type(), 2);
+	}
+
+	private static boolean prefixesIntersect(String x, String y) throws RegexParseException {
+		List<Predicate<Character>> charsets = new ArrayList<Predicate<Character>>();
+		SubsetDFA dfa = new SubsetDFA(Arrays.asList(RegexParser.parse(x, charsets), RegexParser.parse(y, charsets)));
+
+		return dfa.prefixesIntersect(0, 1, SubsetDFA.alphabet(charsets));
+	}
+
+	public void testPrefixesIntersect001() throws RegexParseException {
+		assertTrue(prefixesIntersect("a", "ab"));
+		assertTrue(prefixesIntersect("ab", "a"));
+		assertFalse(prefixesIntersect("a", "b"));
+		assertFalse(prefixesIntersect("[0-9]+", "[a-z]+"));
+		assertTrue(prefixesIntersect("x.*", "xyz"));
+		assertFalse(prefixesIntersect("x(a|b)+c", "xabd"));
+		assertTrue(prefixesIntersect("(?i)a", "A"));
+		assertTrue(prefixesIntersect("a*", "b"));
+	}
+
+	public void testAdaptive001() {
+		Nene<Double> n = new Nene<Double>();
+		Nene.ConditionBuilder<Double> b = n.cond("if", n.action("if", (x, y) -> 1.0))
+				.orElse("[0-9]", n.action("[0-9]+", (x, y) -> 2.0))
+				.orElse("[a-z]", n.action("[a-z]+", (x, y) -> 3.0))
+				.orElse("-", n.action("-[0-9]+", (x, y) -> 4.0))
+				.adaptive();
+
+		assertTrue(b.toString().startsWith("adaptive("));
+
+		// a test of each guard is a step, so the budget tells how many guards are tried
+		n.stepLimit(3);
+		try {
+			b.match("-1", 0.0);
+			fail();
+		} catch(BudgetExceededException e) {
+			assertEquals(e.getKind(), BudgetExceededException.Kind.STEPS);
+		}
+		n.stepLimit(-1);
+		for(int i = 0; i < 5000; i++) {
+			assertEquals(b.match("-" + i, 0.0).attr, 4.0);
+		}
+		n.stepLimit(1);
+		assertEquals(b.match("-1", 0.0).attr, 4.0);
+		n.stepLimit(-1);
+		for(int i = 0; i < 5000; i++) {
+			assertEquals(b.match("x" + i, 0.0).attr, 3.0);
+		}
+		assertEquals(b.match("if", 0.0).attr, 1.0);
+		assertEquals(b.match("765", 0.0).attr, 2.0);
+		assertEquals(b.match("-765", 0.0).attr, 4.0);
+		assertEquals(b.match("iff", 0.0).attr, 1.0);
+		assertNull(b.match("+", 0.0));
+	}
+
+	private static String captured(Captures c, String y) {
+		StringBuilder b = new StringBuilder(y);
+
+		for(int i = 1; i <= c.groups(); i++) {
+			b.append(i > 1 ? "|" : "").append(c.group(i)).append("@").append(c.start(i));
+		}
+		return b.toString();
+	}
+
+	public void testCaptures001() throws RegexParseException {
+		Nene<String> n = new Nene<String>();
+
+		assertEquals(n.then("http://").then(n.captureAction("([a-z.]+):([0-9]+)(/[a-z/]*)*", NeneTest::captured))
+				.match("http://example.com:8080/index/a", "").attr, "example.com@7|8080@19|/index/a@23");
+		assertEquals(n.captureAction("(a)|(b)", NeneTest::captured).match("b", "").attr, "null@-1|b@0");
+		assertEquals(n.captureAction("(ab|a)(bc)*", NeneTest::captured).match("abc", "").attr, "a@0|bc@1");
+		assertEquals(n.captureAction("(x[0-9])+", NeneTest::captured).match("x1x2x3", "").attr, "x3@4");
+		assertEquals(n.then(n.captureAction("(a+)(b+)", NeneTest::captured)).then("c").match("aabbc", "").index, 5);
+		assertEquals(n.captureAction("(?i)(AB)c", NeneTest::captured).match("abC", "").attr, "ab@0");
+		assertNull(n.captureAction("(a)b", NeneTest::captured).match("ac", ""));
+		assertEquals(RegexParser.parseTagged("(a)(b(c))").groups(), 3);
+	}
+
+	public void testStream001() {
+		Nene<Void> n = new Nene<Void>();
+		Nene.Builder<Void> field = n.token("field", "[a-z]+");
+		Nene.Builder<Void> file = n.zeroOrMore(n.event("record",
+				n.then(field).then(n.zeroOrMore(n.then(",").then(field))).then(";")));
+		StringBuilder b = new StringBuilder();
+		ParseListener listener = new ParseListener() {
+
+			@Override
+			public void enter(String name, int start) {
+				b.append("enter ").append(name).append(" ").append(start).append("|");
+			}
+
+			@Override
+			public void exit(String name, int start, int end) {
+				b.append("exit ").append(name).append(" ").append(start).append(" ").append(end).append("|");
+			}
+
+			@Override
+			public void token(String name, int start, int end, char[] text, int offset) {
+				b.append("token ").append(name).append(" ").append(start).append(" ").append(end).append(" ");
+				b.append(text, offset, end - start).append("|");
+			}
+
+		};
+
+		assertEquals(n.stream(file, "ab,c;de;", listener), 8);
+		assertEquals(b.toString(),
+				"enter record 0|token field 0 2 ab|token field 3 4 c|exit record 0 5|" +
+				"enter record 5|token field 5 7 de|exit record 5 8|");
+		b.setLength(0);
+		assertEquals(n.stream(file, "ab,c;d,e,f", listener), 5);
+		assertEquals(b.toString(), "enter record 0|token field 0 2 ab|token field 3 4 c|exit record 0 5|");
+		b.setLength(0);
+		assertEquals(n.stream(n.event("x", field), "xyz", listener), 3);
+		assertEquals(b.toString(), "enter x 0|token field 0 3 xyz|exit x 0 3|");
+		assertEquals(file.match("ab;", null).index, 3);
+
+		// a failing alternative or sequence sends no event
+		b.setLength(0);
+		assertEquals(n.stream(n.cond("a", n.then(n.event("a", n.then("a"))).then("z")).orElse("b"), "ab", listener), -1);
+		assertEquals(b.toString(), "");
+		assertEquals(n.stream(n.then(field).then(";"), "ab,", listener), -1);
+		assertEquals(b.toString(), "");
+		assertEquals(n.stream(n.event("record", n.then(field).then(n.oneOrMore(n.then(",").then(field))).then(";")),
+				"ab,c,", listener), -1);
+		assertEquals(b.toString(), "");
+	}
+
 }